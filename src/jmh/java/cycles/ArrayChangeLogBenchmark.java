@@ -0,0 +1,64 @@
+package cycles;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Добавление и удаление записей истории в куче и в отображенных в память файлах
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ArrayChangeLogBenchmark {
+
+    // количество записей в истории до измерения
+    @Param({"1024", "1048576"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean mapped;
+
+    private ArrayChangeLog log;
+    private Path directory;
+    private long fingerprint;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (mapped) {
+            directory = Files.createTempDirectory("change-log-benchmark");
+            log = ArrayChangeLog.createMapped(directory);
+        }
+        else {
+            log = new ArrayChangeLog();
+        }
+        for (int i = 0; i < size; i++)
+            log.addEntry(RedistributiveArray.weight(i), i, i);
+        fingerprint = RedistributiveArray.weight(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        if (directory != null)
+            Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int addAndRemoveLastEntry() {
+        log.addEntry(fingerprint, size, size);
+        log.removeLastEntry();
+        return log.size();
+    }
+
+    @Benchmark
+    public int lookupByFingerprint() {
+        return log.getLastIterationMatchingFingerprint(RedistributiveArray.weight(size / 2));
+    }
+}
@@ -0,0 +1,54 @@
+package cycles;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Полный поиск цикла каждым из способов
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class DistributionCyclesBenchmark {
+
+    @Param({"16", "64"})
+    int length;
+
+    @Param({"16", "64"})
+    int valueRange;
+
+    @Param({"RANDOM", "ASCENDING", "SPIKE"})
+    InputShape shape;
+
+    private int[] arr;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        arr = shape.generate(length, valueRange);
+    }
+
+    @Benchmark
+    public CycleSearchResult timeEfficient() {
+        // бюджет без ограничений: история отпечатков без переключения на алгоритм Брента
+        return DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public CycleSearchResult memoryEfficient() {
+        return DistributionCycles.evaluateRedistributionOfMaxValueCycleMemoryEfficient(arr);
+    }
+
+    @Benchmark
+    public CycleSearchResult brent() {
+        return DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(arr);
+    }
+
+    @Benchmark
+    public CycleSearchResult distinguishedPoints() {
+        return DistributionCycles.evaluateRedistributionOfMaxValueCycleDistinguishedPoints(arr, 8);
+    }
+}
@@ -0,0 +1,58 @@
+package cycles;
+
+import java.util.Random;
+
+/***
+ * Форма входного массива для бенчмарков. Массивы строятся от фиксированного зерна,
+ * чтобы прогоны были воспроизводимы
+ */
+public enum InputShape {
+    /***
+     * равномерно распределенные значения из [0, valueRange)
+     */
+    RANDOM {
+        @Override
+        int[] generate(int length, int valueRange, Random random) {
+            int[] arr = new int[length];
+            for (int i = 0; i < length; i++)
+                arr[i] = random.nextInt(valueRange);
+            return arr;
+        }
+    },
+    /***
+     * возрастающая пила 0, 1, ..., valueRange - 1, 0, 1, ...
+     */
+    ASCENDING {
+        @Override
+        int[] generate(int length, int valueRange, Random random) {
+            int[] arr = new int[length];
+            for (int i = 0; i < length; i++)
+                arr[i] = i % valueRange;
+            return arr;
+        }
+    },
+    /***
+     * одна ячейка со всей суммой, остальные нули: максимум разливается по всему массиву
+     */
+    SPIKE {
+        @Override
+        int[] generate(int length, int valueRange, Random random) {
+            int[] arr = new int[length];
+            arr[random.nextInt(length)] = (int) Math.min((long) valueRange * length / 2, Integer.MAX_VALUE);
+            return arr;
+        }
+    };
+
+    private static final long SEED = 20181018L;
+
+    abstract int[] generate(int length, int valueRange, Random random);
+
+    /***
+     * @param length длина массива
+     * @param valueRange верхняя граница значений
+     * @return массив заданной формы
+     */
+    public int[] generate(int length, int valueRange) {
+        return generate(length, valueRange, new Random(SEED));
+    }
+}
@@ -0,0 +1,48 @@
+package cycles;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Шаг перераспределения и его откат на массивах разной длины и формы
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RedistributiveArrayBenchmark {
+
+    @Param({"16", "1000", "100000"})
+    int length;
+
+    @Param({"16", "1000"})
+    int valueRange;
+
+    @Param({"RANDOM", "ASCENDING", "SPIKE"})
+    InputShape shape;
+
+    private RedistributiveArray array;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        array = new RedistributiveArray(shape.generate(length, valueRange));
+    }
+
+    @Benchmark
+    public long redistributeMaxValue() {
+        array.redistributeMaxValue();
+        return array.getFingerprint();
+    }
+
+    @Benchmark
+    public long redistributeAndRollback() {
+        int maxValue = array.getMaxValue();
+        int maxValueIndex = array.getMaxValueIndex();
+        array.redistributeMaxValue();
+        array.rollback(maxValue, maxValueIndex);
+        return array.getFingerprint();
+    }
+}
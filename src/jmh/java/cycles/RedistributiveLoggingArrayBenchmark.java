@@ -0,0 +1,58 @@
+package cycles;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Восстановление прошлых состояний массива по истории и контрольным точкам
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RedistributiveLoggingArrayBenchmark {
+    // количество шагов, которое массив проходит перед измерением (меньше, если цикл найден раньше)
+    private static final int HISTORY_LENGTH = 1 << 14;
+
+    @Param({"16", "1000"})
+    int length;
+
+    @Param({"16", "1000"})
+    int valueRange;
+
+    @Param({"RANDOM", "SPIKE"})
+    InputShape shape;
+
+    // 0 - автоматический интервал контрольных точек
+    @Param({"0", "64"})
+    int checkpointInterval;
+
+    private RedistributiveLoggingArray array;
+    private int[] iterations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] arr = shape.generate(length, valueRange);
+        array = checkpointInterval == 0
+                ? new RedistributiveLoggingArray(arr)
+                : new RedistributiveLoggingArray(arr, checkpointInterval);
+        for (int i = 0; i < HISTORY_LENGTH && !array.isCycleFound(); i++)
+            array.redistributeMaxValue();
+        Random random = new Random(1);
+        iterations = new int[1024];
+        for (int i = 0; i < iterations.length; i++)
+            iterations[i] = random.nextInt(array.getIterationCount() + 1);
+    }
+
+    @Benchmark
+    public int[] recover() {
+        int iteration = iterations[next];
+        next = (next + 1) & (iterations.length - 1);
+        return array.recover(iteration);
+    }
+}
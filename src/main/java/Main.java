@@ -1,12 +1,146 @@
+import cycles.ArrayInput;
 import cycles.CycleSearchResult;
 import cycles.DistributionCycles;
+import cycles.SearchPlan;
 
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
+/***
+ * Без аргументов ищет цикл для случайного массива. С аргументами читает массивы из файла или стандартного ввода
+ * (см. ArrayInput) и пишет по строке на массив: длина цикла и количество итераций поиска, в порядке ввода.
+ * Одновременно в работе не больше in-flight массивов, поэтому память не зависит от размера ввода.
+ * Использование: Main [--binary] [--threads N] [--in-flight N] (FILE | -)
+ */
 public class Main {
+    private static final String USAGE = "usage: Main [--binary] [--threads N] [--in-flight N] (FILE | -)";
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            evaluateRandomArray();
+            return;
+        }
+        ArrayInput.Format format = ArrayInput.Format.TEXT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int inFlight = -1;
+        String source = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--binary":
+                    format = ArrayInput.Format.BINARY;
+                    break;
+                case "--threads":
+                    threads = positiveOption(args, ++i);
+                    break;
+                case "--in-flight":
+                    inFlight = positiveOption(args, ++i);
+                    break;
+                default:
+                    // "-" - стандартный ввод, остальные аргументы с дефиса - неизвестные ключи
+                    if (source != null || (args[i].startsWith("-") && !args[i].equals("-")))
+                        exitWithUsage();
+                    source = args[i];
+            }
+        }
+        if (source == null)
+            exitWithUsage();
+        try (ReadableByteChannel channel = source.equals("-")
+                ? Channels.newChannel(new FileInputStream(FileDescriptor.in))
+                : FileChannel.open(Paths.get(source))) {
+            Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+            evaluateStream(new ArrayInput(channel, format), output, threads, inFlight > 0 ? inFlight : 4 * threads);
+            output.flush();
+        }
+    }
+
+    /***
+     * @param index индекс значения ключа в аргументах
+     * @return положительное целое значение ключа; при его отсутствии или неверном значении программа завершается
+     */
+    private static int positiveOption(String[] args, int index) {
+        if (index >= args.length)
+            exitWithUsage();
+        int value = 0;
+        try {
+            value = Integer.parseInt(args[index]);
+        }
+        catch (NumberFormatException e) {
+            exitWithUsage();
+        }
+        if (value <= 0)
+            exitWithUsage();
+        return value;
+    }
+
+    private static void exitWithUsage() {
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    /***
+     * Ищет циклы для массивов из ввода в пуле потоков и пишет результаты по мере готовности, сохраняя порядок ввода
+     * @param threads количество потоков поиска, бюджет памяти по умолчанию делится между ними поровну
+     * @param inFlight наибольшее количество прочитанных, но не записанных массивов
+     */
+    private static void evaluateStream(ArrayInput input, Writer output, int threads, int inFlight)
+            throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long memoryBudget = SearchPlan.defaultMemoryBudget() / threads;
+        ArrayDeque<Future<CycleSearchResult>> pending = new ArrayDeque<>(inFlight);
+        try {
+            int[] arr;
+            while ((arr = input.next()) != null) {
+                if (pending.size() == inFlight)
+                    writeResult(pending.poll(), output);
+                int[] task = arr;
+                pending.add(executor.submit(
+                        () -> DistributionCycles.evaluateRedistributionOfMaxValueCycle(task, memoryBudget)));
+            }
+            while (!pending.isEmpty())
+                writeResult(pending.poll(), output);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /***
+     * Дожидается результата и пишет его; если результат еще не готов, уже записанное сбрасывается в вывод
+     */
+    private static void writeResult(Future<CycleSearchResult> future, Writer output)
+            throws IOException, InterruptedException {
+        if (!future.isDone())
+            output.flush();
+        CycleSearchResult result;
+        try {
+            result = future.get();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("cycle search failed", e.getCause());
+        }
+        output.write(Integer.toString(result.getCycleLength()));
+        output.write(' ');
+        output.write(Integer.toString(result.getIterationsRequired()));
+        output.write('\n');
+    }
+
+    private static void evaluateRandomArray() {
         //int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
         //int[] arr = {0, 0, 0, 0, 10};
         int[] arr = generateRandomArray(30, 1000);
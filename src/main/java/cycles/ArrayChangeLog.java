@@ -1,21 +1,40 @@
 package cycles;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.IntConsumer;
 
 /***
  * История перераспределения максимума в массиве.
  * Хранит не массивы, а только данные о максимальном элементе между итерациями перераспределения.
- * Записи в хранятся как по номерам итераций, так и по хеш-кодам массивов-результатов этих итераций.
+ * Записи в хранятся как по номерам итераций, так и по отпечаткам массивов-результатов этих итераций
+ * (см. RedistributiveArray.fingerprintOf).
  * Нулевая итерация относится к изначальному состоянию массива.
+ * Все данные лежат в массивах примитивов: добавление, удаление последней записи и поиск по отпечатку
+ * выполняются за O(1) без создания объектов. История может храниться как в куче, так и в отображенных
+ * в память файлах (см. createMapped).
  */
-public class ArrayChangeLog {
-    // хеш массива -> итерации, на которых массив с таким хешем встречался
-    private HashMap<Integer, List<Integer>> arrayHashToLogIndices;
-    // ключевые данные о массиве (максимумы и их индексы) по итерациям
-    private List<LogEntry> entries;
+public class ArrayChangeLog implements Closeable {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_ENTRY = ChangeLogStorage.NO_ENTRY;
+    // оценка памяти на запись: отпечаток, максимум с индексом, ссылка на предыдущую итерацию и доля таблицы
+    static final long BYTES_PER_ENTRY = SearchPlan.MEMORY_EFFICIENT_BYTES_PER_ITERATION;
+
+    // записи по итерациям (отпечаток, максимум с индексом, предыдущая итерация с тем же отпечатком)
+    // и хеш-таблица с открытой адресацией: отпечаток массива -> последняя итерация с таким отпечатком;
+    // остальные итерации с тем же отпечатком достижимы по цепочке предыдущих итераций
+    private final ChangeLogStorage storage;
+    private int size;
+    private int tableSize;
+    // значения массива на нулевой итерации, если история ведется массивом RedistributiveLoggingArray
+    private CellStorage initialState;
+    // записи уже вычтены из SearchMetrics.HISTORY_ENTRIES
+    private boolean released;
 
     /***
      * данные о левом максимуме в массиве
@@ -51,9 +70,26 @@ public class ArrayChangeLog {
         }
     }
 
+    /***
+     * Создает историю в куче
+     */
     public ArrayChangeLog() {
-        arrayHashToLogIndices = new HashMap<>();
-        entries = new ArrayList<>();
+        this(new HeapChangeLogStorage(INITIAL_CAPACITY));
+    }
+
+    private ArrayChangeLog(ChangeLogStorage storage) {
+        this.storage = storage;
+        storage.resetTable(2 * INITIAL_CAPACITY);
+    }
+
+    /***
+     * Создает историю вне кучи, в отображенных в память файлах. Файлы растут сегментами по мере добавления
+     * записей и удаляются при закрытии истории
+     * @param directory каталог для файлов истории
+     * @return пустая история
+     */
+    public static ArrayChangeLog createMapped(Path directory) throws IOException {
+        return new ArrayChangeLog(new MappedChangeLogStorage(directory));
     }
 
     /***
@@ -62,67 +98,259 @@ public class ArrayChangeLog {
      * @return данные о максимуме, null если итерации с таким номером нет
      */
     public LogEntry getEntry(int index) {
-        if (index >= entries.size())
+        if (index < 0 || index >= size)
             return null;
-        return entries.get(index);
+        return new LogEntry(getMaxValue(index), getMaxValueIndex(index));
+    }
+
+    /***
+     * @param index номер итерации, должен быть меньше size()
+     * @return максимум массива на данной итерации
+     */
+    public int getMaxValue(int index) {
+        return (int) (storage.getMaxima(index) >> 32);
+    }
+
+    /***
+     * @param index номер итерации, должен быть меньше size()
+     * @return индекс максимума массива на данной итерации
+     */
+    public int getMaxValueIndex(int index) {
+        return (int) storage.getMaxima(index);
     }
 
     /***
-     * Возвращает список номеров итераций, на которых встречался массив с данным хеш-кодом
+     * @param index номер итерации, должен быть меньше size()
+     * @return отпечаток массива на данной итерации
+     */
+    public long getFingerprint(int index) {
+        return storage.getFingerprint(index);
+    }
+
+    /***
+     * Возвращает список номеров итераций, на которых встречался массив с данным отпечатком
+     * @param fingerprint отпечаток массива
+     * @return список номеров итераций, упорядоченный по возрастанию; пустой неизменяемый список, если отпечаток
+     * не встречался ни разу
+     */
+    public List<Integer> getIterationsMatchingFingerprint(long fingerprint) {
+        int iteration = getLastIterationMatchingFingerprint(fingerprint);
+        if (iteration == NO_ENTRY)
+            return Collections.emptyList();
+        List<Integer> iterations = new ArrayList<>();
+        for (; iteration != NO_ENTRY; iteration = storage.getPreviousSameFingerprint(iteration))
+            iterations.add(iteration);
+        Collections.reverse(iterations);
+        return iterations;
+    }
+
+    /***
+     * Возвращает список номеров итераций, на которых встречался массив с данным хеш-кодом значений
+     * (Arrays.hashCode). История хранит отпечатки, а не хеш-коды, поэтому состояния проходятся заново
+     * от начального: O(size() * длина массива).
      * @param hashCode хеш-код массива
-     * @return список номеров итераций, упорядоченный по возрастанию; пустой список, если хеш-код не встречался ни разу
+     * @return список номеров итераций, упорядоченный по возрастанию; пустой список, если хеш-код не встречался
+     * ни разу или история ведется не массивом RedistributiveLoggingArray
+     * @deprecated поиск по 32-битному хеш-коду заменен поиском по отпечатку, см. getIterationsMatchingFingerprint
      */
+    @Deprecated
     public List<Integer> getIterationsMatchingHashCode(int hashCode) {
-        return arrayHashToLogIndices.getOrDefault(hashCode, new ArrayList<>(0));
+        List<Integer> iterations = new ArrayList<>();
+        if (initialState == null || size == 0)
+            return iterations;
+        RedistributiveArray replay = new RedistributiveArray(initialState.copy());
+        for (int iteration = 0; iteration < size; iteration++) {
+            if (iteration > 0)
+                replay.redistributeMaxValue();
+            int replayHash = 1;
+            for (int i = 0; i < replay.getLength(); i++)
+                replayHash = 31 * replayHash + replay.getValue(i);
+            if (replayHash == hashCode)
+                iterations.add(iteration);
+        }
+        return iterations;
+    }
+
+    /***
+     * Запоминает начальное состояние массива, историю которого ведет RedistributiveLoggingArray
+     * @param initialState значения на нулевой итерации при нулевом смещении, не изменяются
+     */
+    void setInitialState(CellStorage initialState) {
+        this.initialState = initialState;
+    }
+
+    /***
+     * Передает номера итераций, на которых встречался массив с данным отпечатком, без выделения памяти
+     * @param fingerprint отпечаток массива
+     * @param visitor получатель номеров итераций, вызывается от последней итерации к первой
+     */
+    public void forEachIterationMatchingFingerprint(long fingerprint, IntConsumer visitor) {
+        for (int iteration = getLastIterationMatchingFingerprint(fingerprint);
+             iteration != NO_ENTRY;
+             iteration = storage.getPreviousSameFingerprint(iteration))
+            visitor.accept(iteration);
+    }
+
+    /***
+     * @param fingerprint отпечаток массива
+     * @return номер последней итерации, на которой встречался массив с данным отпечатком; -1, если таких не было
+     */
+    public int getLastIterationMatchingFingerprint(long fingerprint) {
+        return storage.getSlotIteration(findSlot(fingerprint));
+    }
+
+    /***
+     * @param iteration номер итерации, должен быть меньше size()
+     * @return номер предыдущей итерации с тем же отпечатком массива; -1, если таких не было
+     */
+    public int getPreviousIterationMatchingFingerprint(int iteration) {
+        return storage.getPreviousSameFingerprint(iteration);
     }
 
     /***
      * добавляет запись о состоянии массива в лог
-     * @param hashCode хеш-код массива
+     * @param fingerprint отпечаток массива
      * @param entry данные о массиве
      */
-    void addEntry(int hashCode, LogEntry entry) {
-        entries.add(entry);
-        int entryIndex = entries.size() - 1;
-        arrayHashToLogIndices.putIfAbsent(hashCode, new ArrayList<>(1));
-        arrayHashToLogIndices.get(hashCode).add(entryIndex);
+    void addEntry(long fingerprint, LogEntry entry) {
+        addEntry(fingerprint, entry.getMaxValue(), entry.getMaxValueIndex());
+    }
+
+    /***
+     * добавляет запись о состоянии массива в лог
+     * @param fingerprint отпечаток массива
+     * @param maxValue максимум массива
+     * @param maxValueIndex индекс максимума
+     */
+    void addEntry(long fingerprint, int maxValue, int maxValueIndex) {
+        storage.ensureRecordCapacity(size + 1);
+        int entryIndex = size++;
+        int slot = findSlot(fingerprint);
+        int previousIteration = storage.getSlotIteration(slot);
+        storage.setRecord(entryIndex, fingerprint, ((long) maxValue << 32) | (maxValueIndex & 0xFFFFFFFFL),
+                previousIteration);
+        storage.setSlot(slot, fingerprint, entryIndex);
+        if (previousIteration == NO_ENTRY && ++tableSize * 2 > storage.getTableCapacity())
+            growTable();
+        if (SearchMetrics.ENABLED && !released)
+            SearchMetrics.HISTORY_ENTRIES.increment();
     }
 
     /***
      * Удаляет последнюю запись из лога
      */
     void removeLastEntry() {
-        int entryIndex = entries.size() - 1;
-        entries.remove(entryIndex);
-        for (int hashCode : arrayHashToLogIndices.keySet()) {
-            arrayHashToLogIndices.get(hashCode).remove(new Integer(entryIndex));
-        }
+        if (size == 0) return;
+        int entryIndex = --size;
+        long fingerprint = storage.getFingerprint(entryIndex);
+        int slot = findSlot(fingerprint);
+        int previousIteration = storage.getPreviousSameFingerprint(entryIndex);
+        if (previousIteration == NO_ENTRY)
+            removeSlot(slot);
+        else
+            storage.setSlot(slot, fingerprint, previousIteration);
+        if (SearchMetrics.ENABLED && !released)
+            SearchMetrics.HISTORY_ENTRIES.decrement();
     }
 
     /***
      * Удаляет последнюю запись из лога
-     * @param hashCode хеш-код массива, к которому относится последняя запись;
-     *                 если массива с таким кодом не было, не производит удаления
+     * @param fingerprint отпечаток массива, к которому относится последняя запись;
+     *                    если массива с таким отпечатком не было, не производит удаления
      */
-    void removeLastEntry(int hashCode) {
-        if (!arrayHashToLogIndices.containsKey(hashCode)) return;
-        int entryIndex = entries.size() - 1;
-        entries.remove(entryIndex);
-        arrayHashToLogIndices.get(hashCode).remove(new Integer(entryIndex));
+    void removeLastEntry(long fingerprint) {
+        if (getLastIterationMatchingFingerprint(fingerprint) == NO_ENTRY) return;
+        removeLastEntry();
     }
 
     /***
      * @return количество записей в логе
      */
     public int size() {
-        return entries.size();
+        return size;
+    }
+
+    /***
+     * @return оценка памяти под записи истории в байтах, в куче или вне ее
+     */
+    public long getMemoryBytes() {
+        return size * BYTES_PER_ENTRY;
     }
 
     /***
      * @return последнюю запись в логе, null если лог пустой
      */
     public LogEntry getLastEntry() {
-        if (entries.isEmpty()) return null;
-        return entries.get(entries.size() - 1);
+        return getEntry(size - 1);
+    }
+
+    /***
+     * @return ячейка таблицы, в которой лежит отпечаток, или пустая ячейка, куда его следует положить
+     */
+    private int findSlot(long fingerprint) {
+        int mask = storage.getTableCapacity() - 1;
+        int slot = spread(fingerprint) & mask;
+        while (storage.getSlotIteration(slot) != NO_ENTRY && storage.getSlotFingerprint(slot) != fingerprint)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /***
+     * Освобождает ячейку таблицы, сдвигая назад следующие за ней ключи, чтобы не разорвать цепочки проб
+     */
+    private void removeSlot(int slot) {
+        int mask = storage.getTableCapacity() - 1;
+        tableSize--;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        int nextIteration;
+        while ((nextIteration = storage.getSlotIteration(next)) != NO_ENTRY) {
+            long nextFingerprint = storage.getSlotFingerprint(next);
+            int home = spread(nextFingerprint) & mask;
+            // ключ можно перенести в дыру, если его домашняя ячейка не лежит между дырой и его текущим местом
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                storage.setSlot(hole, nextFingerprint, nextIteration);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        storage.clearSlot(hole);
+    }
+
+    /***
+     * Удваивает таблицу и заполняет ее заново по записям: более поздняя итерация с тем же отпечатком
+     * перезаписывает более раннюю
+     */
+    private void growTable() {
+        storage.resetTable(2 * storage.getTableCapacity());
+        for (int i = 0; i < size; i++) {
+            long fingerprint = storage.getFingerprint(i);
+            storage.setSlot(findSlot(fingerprint), fingerprint, i);
+        }
+    }
+
+    /***
+     * Освобождает хранилище истории; для истории вне кучи удаляет ее файлы
+     */
+    @Override
+    public void close() throws IOException {
+        release();
+        storage.close();
+    }
+
+    /***
+     * Вычитает записи истории из счетчика SearchMetrics.HISTORY_ENTRIES, когда история больше не нужна;
+     * повторные вызовы ничего не делают. Вызывается при закрытии и способами поиска, которые выбрасывают
+     * историю в куче без закрытия.
+     */
+    void release() {
+        if (SearchMetrics.ENABLED && !released)
+            SearchMetrics.HISTORY_ENTRIES.add(-size);
+        released = true;
+    }
+
+    private static int spread(long fingerprint) {
+        long h = fingerprint * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
     }
 }
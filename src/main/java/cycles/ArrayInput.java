@@ -0,0 +1,159 @@
+package cycles;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/***
+ * Потоковое чтение массивов из канала: текст (массив на строку) или двоичный формат с префиксом длины.
+ * В тексте числа разделяются пробелами, табуляциями или запятыми, пустые строки пропускаются.
+ * Двоичная запись - длина массива и его значения, все 32-битные в порядке big-endian (как у DataOutputStream).
+ * Числа разбираются прямо из байтового буфера, без строк и упаковки; на массив выделяется только сам массив.
+ * Префиксу длины не доверяется: длинный массив растет по мере чтения значений, поэтому испорченная или обрезанная
+ * запись с огромной длиной заканчивается EOFException, а не выделением памяти под всю заявленную длину.
+ */
+public final class ArrayInput {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // столько значений записи выделяется сразу, дальше массив удваивается по мере чтения
+    private static final int INITIAL_RECORD_CAPACITY = 1 << 16;
+
+    /***
+     * Формат входных данных
+     */
+    public enum Format {
+        TEXT,
+        BINARY
+    }
+
+    private final ReadableByteChannel channel;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean endOfChannel;
+    // значения разбираемой строки
+    private int[] values = new int[64];
+    private long lineNumber;
+
+    /***
+     * @param channel канал с входными данными, не закрывается
+     * @param format формат входных данных
+     */
+    public ArrayInput(ReadableByteChannel channel, Format format) {
+        this.channel = channel;
+        this.format = format;
+        buffer.flip();
+    }
+
+    /***
+     * @return следующий массив, null если данные кончились
+     * @throws IOException при ошибке чтения или неверном формате данных
+     */
+    public int[] next() throws IOException {
+        return format == Format.TEXT ? nextLine() : nextRecord();
+    }
+
+    private int[] nextLine() throws IOException {
+        int count = 0;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                if (count > 0)
+                    return Arrays.copyOf(values, count);
+                return null;
+            }
+            byte b = buffer.get();
+            if (b == '\n') {
+                ++lineNumber;
+                if (count > 0)
+                    return Arrays.copyOf(values, count);
+            }
+            else if (b == '-' || (b >= '0' && b <= '9')) {
+                if (count == values.length)
+                    values = Arrays.copyOf(values, 2 * count);
+                values[count++] = parseNumber(b);
+            }
+            else if (b != ' ' && b != '\t' && b != ',' && b != '\r') {
+                throw new IOException("unexpected character '" + (char) b + "' at line " + (lineNumber + 1));
+            }
+        }
+    }
+
+    /***
+     * Разбирает число, первый байт которого уже прочитан
+     */
+    private int parseNumber(byte first) throws IOException {
+        boolean negative = first == '-';
+        long value = negative ? 0 : first - '0';
+        int digits = negative ? 0 : 1;
+        while (buffer.hasRemaining() || fill()) {
+            byte b = buffer.get(buffer.position());
+            if (b < '0' || b > '9')
+                break;
+            buffer.get();
+            value = value * 10 + (b - '0');
+            ++digits;
+            if (value > Integer.MAX_VALUE + 1L)
+                throw new IOException("number out of int range at line " + (lineNumber + 1));
+        }
+        if (digits == 0)
+            throw new IOException("dangling '-' at line " + (lineNumber + 1));
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            throw new IOException("number out of int range at line " + (lineNumber + 1));
+        return (int) value;
+    }
+
+    private int[] nextRecord() throws IOException {
+        if (!ensure(4)) {
+            if (buffer.hasRemaining())
+                throw new EOFException("truncated array length");
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length < 0)
+            throw new IOException("negative array length: " + length);
+        int[] arr = new int[Math.min(length, INITIAL_RECORD_CAPACITY)];
+        for (int i = 0; i < length; i++) {
+            if (!ensure(4))
+                throw new EOFException("truncated array: " + i + " of " + length + " values");
+            if (i == arr.length)
+                arr = Arrays.copyOf(arr, (int) Math.min(length, 2L * arr.length));
+            arr[i] = buffer.getInt();
+        }
+        return arr;
+    }
+
+    /***
+     * Дочитывает канал, пока в буфере не окажется хотя бы count байт
+     * @return false, если данные кончились раньше
+     */
+    private boolean ensure(int count) throws IOException {
+        while (buffer.remaining() < count) {
+            if (!fill())
+                return false;
+        }
+        return true;
+    }
+
+    /***
+     * Переносит непрочитанный остаток в начало буфера и дочитывает канал
+     * @return false, если канал кончился и ничего не прочитано
+     */
+    private boolean fill() throws IOException {
+        if (endOfChannel)
+            return false;
+        buffer.compact();
+        int read;
+        try {
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+        }
+        finally {
+            buffer.flip();
+        }
+        if (read < 0)
+            endOfChannel = true;
+        return read > 0;
+    }
+}
@@ -0,0 +1,175 @@
+package cycles;
+
+/***
+ * Неизменяемый снимок состояния RedistributiveArray: значения ячеек и данные о максимуме.
+ * Ячейки хранятся в префиксном дереве с блоками по NODE_SIZE ячеек в листьях (CellStorage той же ширины, что у массива) и NODE_SIZE потомками во внутренних
+ * узлах. Снимок следующего состояния копирует только листья, измененные шагом перераспределения, и путь от них
+ * до корня, остальные узлы делятся с предыдущим снимком. Листья хранят значения без общего смещения
+ * (см. RedistributiveArray.offset), поэтому равномерная прибавка ко всем ячейкам листья не меняет.
+ * Снимки равны, если равны состояния массивов, что позволяет хранить их ключами в HashMap.
+ */
+final class ArraySnapshot {
+    private static final int SHIFT = 6;
+    // количество ячеек в листе и потомков во внутреннем узле
+    static final int NODE_SIZE = 1 << SHIFT;
+
+    private final int length;
+    // количество уровней внутренних узлов; 0 - корень является листом
+    private final int depth;
+    // лист CellStorage или внутренний узел Object[]
+    private final Object root;
+    private final int offset;
+    private final int maxValue, maxValueIndex;
+    private final long fingerprint;
+
+    private ArraySnapshot(int length, int depth, Object root, RedistributiveArray array) {
+        this.length = length;
+        this.depth = depth;
+        this.root = root;
+        this.offset = array.offset;
+        this.maxValue = array.maxValue;
+        this.maxValueIndex = array.maxValueIndex;
+        this.fingerprint = array.fingerprint;
+    }
+
+    /***
+     * Снимает состояние массива целиком
+     * @param array массив
+     * @return снимок, не разделяющий узлов ни с каким другим
+     */
+    static ArraySnapshot of(RedistributiveArray array) {
+        int length = array.cells.length();
+        int depth = 0;
+        for (long leaves = (length + NODE_SIZE - 1) / NODE_SIZE; leaves > 1; leaves = (leaves + NODE_SIZE - 1) / NODE_SIZE)
+            ++depth;
+        return new ArraySnapshot(length, depth, build(array.cells, depth, 0), array);
+    }
+
+    /***
+     * Снимает состояние массива после одного шага перераспределения от состояния этого снимка
+     * @param array массив, сделавший один шаг из состояния этого снимка
+     * @param previousMaxValue максимум до шага
+     * @param previousMaxIndex индекс максимума до шага
+     * @return снимок, разделяющий с этим все узлы, кроме путей к измененным листьям
+     */
+    ArraySnapshot next(RedistributiveArray array, int previousMaxValue, int previousMaxIndex) {
+        if (length <= 1 || previousMaxValue == 0)
+            return this; // шаг ничего не изменил
+        CellStorage data = array.cells;
+        // обнуленный максимум
+        Object nextRoot = update(root, depth, 0, previousMaxIndex >> SHIFT, previousMaxIndex >> SHIFT, data);
+        // ячейки, получившие остаток
+        int surplusCount = Math.abs(previousMaxValue % length);
+        if (surplusCount > 0) {
+            int startIndex = (previousMaxIndex + 1) % length;
+            int endIndex = startIndex + surplusCount - 1;
+            if (endIndex < length) {
+                nextRoot = update(nextRoot, depth, 0, startIndex >> SHIFT, endIndex >> SHIFT, data);
+            }
+            else {
+                nextRoot = update(nextRoot, depth, 0, startIndex >> SHIFT, (length - 1) >> SHIFT, data);
+                nextRoot = update(nextRoot, depth, 0, 0, (endIndex - length) >> SHIFT, data);
+            }
+        }
+        return new ArraySnapshot(length, depth, nextRoot, array);
+    }
+
+    /***
+     * @return значение ячейки в состоянии снимка
+     */
+    int get(int index) {
+        Object node = root;
+        for (int level = depth; level > 0; level--)
+            node = ((Object[]) node)[(index >>> (SHIFT * level)) & (NODE_SIZE - 1)];
+        return ((CellStorage) node).value(index & (NODE_SIZE - 1), offset);
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    /***
+     * Оценка памяти на один снимок, сделанный через next: сам объект и копии путей к двум измененным листьям
+     * (обнуленный максимум и начало остатка)
+     * @param length длина массива
+     * @param cellBytes ширина ячейки в байтах (см. CellStorage.cellBytes)
+     * @return оценка в байтах
+     */
+    static long estimateBytesPerStep(int length, int cellBytes) {
+        int depth = 0;
+        for (long leaves = (length + NODE_SIZE - 1) / NODE_SIZE; leaves > 1; leaves = (leaves + NODE_SIZE - 1) / NODE_SIZE)
+            ++depth;
+        long leafBytes = 32 + (long) cellBytes * Math.min(length, NODE_SIZE);
+        long nodeBytes = 16 + 4L * NODE_SIZE;
+        return 40 + 2 * (leafBytes + depth * nodeBytes);
+    }
+
+    /***
+     * Строит поддерево из значений массива
+     * @param level уровень узла, 0 для листа
+     * @param from индекс первой ячейки поддерева
+     */
+    private static Object build(CellStorage data, int level, long from) {
+        if (level == 0)
+            return data.copyRange((int) from, (int) Math.min(from + NODE_SIZE, data.length()));
+        Object[] node = new Object[NODE_SIZE];
+        long childSpan = 1L << (SHIFT * level);
+        for (int i = 0; i < NODE_SIZE && from + i * childSpan < data.length(); i++)
+            node[i] = build(data, level - 1, from + i * childSpan);
+        return node;
+    }
+
+    /***
+     * Копирует путь от узла к листьям firstLeaf..lastLeaf, листья заполняются текущими значениями массива
+     * @param level уровень узла, 0 для листа
+     * @param nodeFirstLeaf номер первого листа поддерева
+     */
+    private static Object update(Object node, int level, long nodeFirstLeaf, int firstLeaf, int lastLeaf,
+                                 CellStorage data) {
+        if (level == 0) {
+            int from = (int) (nodeFirstLeaf << SHIFT);
+            return data.copyRange(from, Math.min(from + NODE_SIZE, data.length()));
+        }
+        Object[] copy = ((Object[]) node).clone();
+        long childLeaves = 1L << (SHIFT * (level - 1));
+        int fromChild = (int) Math.max(0, (firstLeaf - nodeFirstLeaf) / childLeaves);
+        int toChild = (int) Math.min(NODE_SIZE - 1, (lastLeaf - nodeFirstLeaf) / childLeaves);
+        for (int i = fromChild; i <= toChild; i++)
+            copy[i] = update(copy[i], level - 1, nodeFirstLeaf + i * childLeaves, firstLeaf, lastLeaf, data);
+        return copy;
+    }
+
+    /***
+     * Сравнивает поддеревья с учетом смещений; общие узлы с равными смещениями не обходятся
+     */
+    private static boolean subtreeEquals(Object node, int offset, Object other, int otherOffset, int level) {
+        if (node == other && offset == otherOffset)
+            return true;
+        if (level == 0)
+            return ((CellStorage) node).valuesEqual(offset, (CellStorage) other, otherOffset);
+        Object[] children = (Object[]) node;
+        Object[] otherChildren = (Object[]) other;
+        for (int i = 0; i < NODE_SIZE && children[i] != null; i++) {
+            if (!subtreeEquals(children[i], offset, otherChildren[i], otherOffset, level - 1))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ArraySnapshot that = (ArraySnapshot) o;
+        return fingerprint == that.fingerprint
+                && length == that.length
+                && maxValue == that.maxValue
+                && maxValueIndex == that.maxValueIndex
+                && subtreeEquals(root, offset, that.root, that.offset, depth);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+}
@@ -0,0 +1,104 @@
+package cycles;
+
+import java.util.Arrays;
+
+/***
+ * Ячейки в byte[] для неотрицательных массивов с суммой не больше 255: значение ячейки равно хранимому числу
+ * плюс смещение по модулю 2^8 (см. CellStorage)
+ */
+final class ByteCellStorage extends CellStorage {
+    private static final int MASK = 0xFF;
+
+    private final byte[] cells;
+
+    ByteCellStorage(int length) {
+        this.cells = new byte[length];
+    }
+
+    private ByteCellStorage(byte[] cells) {
+        this.cells = cells;
+    }
+
+    @Override
+    int cellBytes() {
+        return 1;
+    }
+
+    @Override
+    int length() {
+        return cells.length;
+    }
+
+    @Override
+    int value(int index, int offset) {
+        return (cells[index] + offset) & MASK;
+    }
+
+    @Override
+    void set(int index, int value, int offset) {
+        cells[index] = (byte) (value - offset);
+    }
+
+    @Override
+    void add(int index, int delta) {
+        cells[index] += delta;
+    }
+
+    @Override
+    long addToRange(int from, int to, int delta) {
+        for (int i = from; i < to; i++)
+            cells[i] += delta;
+        return RangeKernel.INSTANCE.weightSum(from, to);
+    }
+
+    @Override
+    int leftmostMaxIndex(int offset, int from, int to) {
+        int max = (cells[from] + offset) & MASK;
+        int maxIndex = from;
+        for (int i = from + 1; i < to; i++) {
+            int value = (cells[i] + offset) & MASK;
+            if (value > max) {
+                max = value;
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    @Override
+    void assignValues(int[] values) {
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = (byte) values[i];
+    }
+
+    @Override
+    void assign(CellStorage source) {
+        System.arraycopy(((ByteCellStorage) source).cells, 0, cells, 0, cells.length);
+    }
+
+    @Override
+    CellStorage copyRange(int from, int to) {
+        return new ByteCellStorage(Arrays.copyOfRange(cells, from, to));
+    }
+
+    @Override
+    CellStorage copyValues(int offset) {
+        byte[] values = new byte[cells.length];
+        for (int i = 0; i < cells.length; i++)
+            values[i] = (byte) (cells[i] + offset);
+        return new ByteCellStorage(values);
+    }
+
+    @Override
+    void copyValuesInto(int offset, int[] destination) {
+        for (int i = 0; i < cells.length; i++)
+            destination[i] = (cells[i] + offset) & MASK;
+    }
+
+    @Override
+    boolean valuesEqual(int offset, CellStorage other, int otherOffset) {
+        if (other instanceof ByteCellStorage && ((offset - otherOffset) & MASK) == 0)
+            return Arrays.equals(cells, ((ByteCellStorage) other).cells);
+        return super.valuesEqual(offset, other, otherOffset);
+    }
+}
@@ -0,0 +1,17 @@
+package cycles;
+
+/***
+ * Признак отмены поиска (см. SearchLimits.withCancellation): любой поток может отменить поиск, поиск замечает
+ * отмену на ближайшей проверке ограничений
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
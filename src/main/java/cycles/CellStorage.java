@@ -0,0 +1,144 @@
+package cycles;
+
+import java.nio.file.Path;
+
+/***
+ * Хранилище ячеек RedistributiveArray. Ячейки хранят значения без общего смещения (см. RedistributiveArray.offset):
+ * значение ячейки равно хранимому числу плюс смещение по модулю ширины ячейки.
+ * Перераспределение сохраняет сумму массива, поэтому для неотрицательного массива с суммой S любая ячейка
+ * в любом состоянии лежит в [0, S]; если S помещается в 8 или 16 бит без знака, ячейки хранятся в byte[] или short[],
+ * и сложение по модулю 2^8 или 2^16 восстанавливает значение точно. Иначе ячейки хранятся в int[].
+ */
+abstract class CellStorage {
+
+    /***
+     * Создает хранилище самой узкой подходящей ширины со значениями массива при нулевом смещении
+     * @param values значения ячеек
+     * @return хранилище
+     */
+    static CellStorage forValues(int[] values) {
+        CellStorage cells;
+        switch (cellBytes(values)) {
+            case 1:
+                cells = new ByteCellStorage(values.length);
+                break;
+            case 2:
+                cells = new ShortCellStorage(values.length);
+                break;
+            default:
+                cells = new IntCellStorage(values.length);
+        }
+        cells.assignValues(values);
+        return cells;
+    }
+
+    /***
+     * @return ширина ячейки в байтах, достаточная для всех состояний массива
+     */
+    static int cellBytes(int[] values) {
+        long sum = 0;
+        for (int value : values) {
+            if (value < 0) return 4;
+            sum += value;
+        }
+        if (sum <= 0xFF) return 1;
+        if (sum <= 0xFFFF) return 2;
+        return 4;
+    }
+
+    /***
+     * @return ширина ячейки этого хранилища в байтах
+     */
+    abstract int cellBytes();
+
+    abstract int length();
+
+    /***
+     * @return значение ячейки при данном смещении
+     */
+    abstract int value(int index, int offset);
+
+    /***
+     * Записывает в ячейку значение при данном смещении
+     */
+    abstract void set(int index, int value, int offset);
+
+    /***
+     * Прибавляет к ячейке число
+     */
+    abstract void add(int index, int delta);
+
+    /***
+     * Прибавляет число к ячейкам с from по to не включительно
+     * @return сумма весов этих ячеек в отпечатке массива (см. RedistributiveArray.weight)
+     */
+    abstract long addToRange(int from, int to, int delta);
+
+    /***
+     * @param from индекс первой ячейки, диапазон непустой
+     * @param to индекс за последней ячейкой
+     * @return индекс самого левого максимума значений в диапазоне при данном смещении
+     */
+    abstract int leftmostMaxIndex(int offset, int from, int to);
+
+    /***
+     * Записывает значения массива при нулевом смещении
+     * @param values значения той же длины, не шире ячеек хранилища (см. canHold)
+     */
+    abstract void assignValues(int[] values);
+
+    /***
+     * Копирует хранимые числа из хранилища той же ширины и длины
+     */
+    abstract void assign(CellStorage source);
+
+    /***
+     * @return копия хранимых чисел с from по to не включительно в хранилище той же ширины
+     */
+    abstract CellStorage copyRange(int from, int to);
+
+    /***
+     * @return хранилище той же ширины со значениями этого при данном смещении, записанными при нулевом смещении
+     */
+    abstract CellStorage copyValues(int offset);
+
+    /***
+     * Записывает значения ячеек при данном смещении в обычный массив
+     */
+    abstract void copyValuesInto(int offset, int[] destination);
+
+    /***
+     * @return копия хранилища
+     */
+    CellStorage copy() {
+        return copyRange(0, length());
+    }
+
+    /***
+     * @param directory каталог для временных файлов копии и ее собственных копий; хранилища в куче его не используют
+     * @return копия хранилища
+     */
+    CellStorage copyTo(Path directory) {
+        return copy();
+    }
+
+    /***
+     * @return true, если значения массива помещаются в ячейки этого хранилища во всех состояниях
+     */
+    boolean canHold(int[] values) {
+        return cellBytes(values) <= cellBytes();
+    }
+
+    /***
+     * @return true, если значения ячеек этого хранилища при смещении offset совпадают со значениями другого
+     * при смещении otherOffset
+     */
+    boolean valuesEqual(int offset, CellStorage other, int otherOffset) {
+        if (length() != other.length()) return false;
+        for (int i = 0; i < length(); i++) {
+            if (value(i, offset) != other.value(i, otherOffset))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package cycles;
+
+import java.io.Closeable;
+
+/***
+ * Хранилище примитивных данных истории перераспределений (см. ArrayChangeLog): записи фиксированной длины
+ * по итерациям и ячейки хеш-таблицы отпечаток -> итерация. Логика истории от способа хранения не зависит,
+ * данные могут лежать как в куче, так и вне ее.
+ */
+interface ChangeLogStorage extends Closeable {
+    // номер итерации для пустой ячейки таблицы и для отсутствующей предыдущей записи
+    int NO_ENTRY = -1;
+
+    /***
+     * Гарантирует место под указанное количество записей
+     */
+    void ensureRecordCapacity(int recordCount);
+
+    long getFingerprint(int index);
+
+    /***
+     * @return максимум в старших 32 битах, его индекс в младших
+     */
+    long getMaxima(int index);
+
+    int getPreviousSameFingerprint(int index);
+
+    void setRecord(int index, long fingerprint, long maxima, int previousSameFingerprint);
+
+    /***
+     * @return количество ячеек хеш-таблицы, степень двойки
+     */
+    int getTableCapacity();
+
+    long getSlotFingerprint(int slot);
+
+    /***
+     * @return номер итерации в ячейке таблицы, NO_ENTRY для пустой ячейки
+     */
+    int getSlotIteration(int slot);
+
+    void setSlot(int slot, long fingerprint, int iteration);
+
+    void clearSlot(int slot);
+
+    /***
+     * Заменяет хеш-таблицу новой пустой таблицей
+     * @param capacity количество ячеек, степень двойки
+     */
+    void resetTable(int capacity);
+}
@@ -3,19 +3,32 @@ package cycles;
 import java.util.Objects;
 
 /***
- * Структура данных, описывающая результат поиска цикла перераспределения максимума в массиве
+ * Структура данных, описывающая результат поиска цикла перераспределения максимума в массиве.
+ * План поиска и точка переключения способа поиска - справочные сведения, в сравнении результатов не участвуют
  * */
 
 public class CycleSearchResult {
 
     private int cycleLength; // длина цикла
     private int iterationsRequired; // количество шагов, необходимых для поиска цикла
+    private SearchPlan plan; // план поиска, null если поиск шел без плана
+    private int engineSwitchIteration = -1; // итерация, на которой поиск переключился на алгоритм Брента
 
     public CycleSearchResult(int cycleLength, int iterationsRequired) {
         this.cycleLength = cycleLength;
         this.iterationsRequired = iterationsRequired;
     }
 
+    /***
+     * @param plan план, по которому шел поиск
+     * @param engineSwitchIteration итерация переключения на алгоритм Брента, -1 если переключения не было
+     */
+    CycleSearchResult(int cycleLength, int iterationsRequired, SearchPlan plan, int engineSwitchIteration) {
+        this(cycleLength, iterationsRequired);
+        this.plan = plan;
+        this.engineSwitchIteration = engineSwitchIteration;
+    }
+
     public int getCycleLength() {
         return cycleLength;
     }
@@ -24,10 +37,35 @@ public class CycleSearchResult {
         return iterationsRequired;
     }
 
+    /***
+     * @return длина предпериода: количество итераций до первого попадания в цикл
+     */
+    public int getPreperiodLength() {
+        return iterationsRequired - cycleLength;
+    }
+
+    /***
+     * @return план, по которому шел поиск; null если поиск шел без плана
+     */
+    public SearchPlan getPlan() {
+        return plan;
+    }
+
+    /***
+     * @return итерация, на которой история перестала помещаться в память и поиск продолжился алгоритмом Брента;
+     * -1 если переключения не было
+     */
+    public int getEngineSwitchIteration() {
+        return engineSwitchIteration;
+    }
+
     @Override
     public String toString() {
         return "Cycle period = " + cycleLength +
-                "; cycle search iterations = " + iterationsRequired;
+                "; pre-period = " + getPreperiodLength() +
+                "; cycle search iterations = " + iterationsRequired +
+                (plan != null ? "; plan: " + plan : "") +
+                (engineSwitchIteration >= 0 ? "; switched engine at iteration " + engineSwitchIteration : "");
     }
 
     @Override
@@ -1,6 +1,10 @@
 package cycles;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /***
  * Интерфейс со статическими методами поиска циклов распределения в массивах
@@ -9,52 +13,349 @@ public abstract class DistributionCycles {
 
     /***
      * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
-     * по массиву
+     * по массиву. Способ поиска выбирается по оценке расхода памяти, бюджет - половина свободной памяти кучи.
      * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
      * @return результат поиска (длина цикла, количество итераций поиска)
      */
     public static CycleSearchResult evaluateRedistributionOfMaxValueCycle(int[] arr) {
-        return isAcceptableMemoryDemand(arr)
-                ? evaluateRedistributionOfMaxValueCycleTimeEfficient(arr)
-                : evaluateRedistributionOfMaxValueCycleMemoryEfficient(arr) ;
+        return evaluateRedistributionOfMaxValueCycle(arr, SearchPlan.defaultMemoryBudget());
+    }
+
+    /***
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву. Способ поиска выбирается по оценке расхода памяти (см. SearchPlan); если история перестает
+     * помещаться в бюджет, поиск продолжается алгоритмом Брента с текущего состояния, без перезапуска.
+     * План и итерация переключения сохраняются в результате.
+     * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @param memoryBudget допустимый расход памяти в байтах
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycle(int[] arr, long memoryBudget) {
+        return evaluateRedistributionOfMaxValueCycle(arr, memoryBudget, new SearchScratch(), null);
+    }
+
+    /***
+     * Ищет цикл перераспределения максимума по плану с бюджетом по умолчанию, но не дольше заданных ограничений:
+     * количества шагов, срока и отмены извне (см. SearchLimits). Ограничения проверяются перед шагами
+     * перераспределения на всех этапах поиска, включая продолжение алгоритмом Брента; получатель сведений о ходе
+     * поиска вызывается на тех же проверках. Остановленный поиск возвращает количество сделанных шагов и отпечаток
+     * текущего состояния; события SearchListener.searchFinished для него не приходят.
+     * @param arr массив целых чисел, для null и пустого массива вернет найденный цикл (0, 0)
+     * @param limits ограничения поиска
+     * @return результат поиска или сведения о месте остановки
+     */
+    public static LimitedSearchResult evaluateRedistributionOfMaxValueCycle(int[] arr, SearchLimits limits) {
+        if (arr == null || arr.length == 0)
+            return new LimitedSearchResult(LimitedSearchResult.StopReason.CYCLE_FOUND, new CycleSearchResult(0, 0),
+                    0, 0);
+        SearchGuard guard = SearchGuard.of(limits, arr.length);
+        try {
+            CycleSearchResult result = evaluateRedistributionOfMaxValueCycle(arr, SearchPlan.defaultMemoryBudget(),
+                    new SearchScratch(), null, guard);
+            return new LimitedSearchResult(LimitedSearchResult.StopReason.CYCLE_FOUND, result, guard.getSteps(), 0);
+        }
+        catch (SearchGuard.Stop stop) {
+            return stop.toResult();
+        }
     }
 
     /***
-     * Оценка расхода памяти на быстрый поиск цикла
-     * @param arr массив для поиска цикла
-     * @return true, если расход памяти приемлемый
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву, с общим кешем пройденных состояний (см. TrajectoryCache). Если поиск по истории доходит
+     * до состояния из кеша, результат выводится из записи кеша; состояния законченного поиска попадают в кеш.
+     * Кеш используется только поиском по истории, при другом плане поиск идет как без кеша.
+     * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @param cache общий кеш состояний
+     * @return результат поиска (длина цикла, количество итераций поиска)
      */
-    private static boolean isAcceptableMemoryDemand(int[] arr) {
-        // условие можно изменить на более приемлемое для данной машины,
-        // напр. Runtime.getRuntime().freeMemory() > N;
-        return arr == null || arr.length < 1000;
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycle(int[] arr, TrajectoryCache cache) {
+        return evaluateRedistributionOfMaxValueCycle(arr, SearchPlan.defaultMemoryBudget(), new SearchScratch(),
+                cache);
     }
 
     /***
      * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
-     * по массиву. Работает быстрее, но расходует много памяти.
+     * по массиву. Сначала ищет результат в хранилище на диске (см. ResultStore), при промахе ищет цикл
+     * по плану с бюджетом по умолчанию и сохраняет результат.
      * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @param store хранилище результатов
      * @return результат поиска (длина цикла, количество итераций поиска)
      */
-    private static CycleSearchResult evaluateRedistributionOfMaxValueCycleTimeEfficient(int[] arr) {
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycle(int[] arr, ResultStore store) {
         if (arr == null || arr.length == 0)
             return new CycleSearchResult(0, 0);
-        RedistributiveArray redistributiveArray = new RedistributiveArray(arr);
+        CycleSearchResult stored = store.get(arr);
+        if (stored != null)
+            return stored;
+        CycleSearchResult result = evaluateRedistributionOfMaxValueCycle(arr);
+        store.put(arr, result);
+        return result;
+    }
+
+    /***
+     * Ищет циклы перераспределения максимума для каждого массива из пакета, распределяя массивы по потокам
+     * общего пула ForkJoinPool
+     * @param arrays массивы целых чисел, для null и пустых массивов результат (0, 0)
+     * @return результаты поиска в порядке массивов
+     */
+    public static CycleSearchResult[] evaluateAll(int[][] arrays) {
+        return evaluateAll(arrays, ForkJoinPool.commonPool());
+    }
+
+    /***
+     * Ищет циклы перераспределения максимума для каждого массива из пакета, распределяя массивы по потокам пула.
+     * Пакет делится на части по несколько массивов, внутри части рабочие структуры поиска переиспользуются.
+     * Бюджет памяти по умолчанию делится поровну между потоками пула.
+     * @param arrays массивы целых чисел, для null и пустых массивов результат (0, 0)
+     * @param pool пул потоков
+     * @return результаты поиска в порядке массивов
+     */
+    public static CycleSearchResult[] evaluateAll(int[][] arrays, ForkJoinPool pool) {
+        return evaluateAll(arrays, pool, null);
+    }
+
+    /***
+     * Ищет циклы перераспределения максимума для каждого массива из пакета, распределяя массивы по потокам пула.
+     * Все поиски пакета делят кеш пройденных состояний: поиск, дошедший до состояния, известного по другому
+     * массиву, заканчивается сразу (см. evaluateRedistributionOfMaxValueCycle(int[], TrajectoryCache)).
+     * @param arrays массивы целых чисел, для null и пустых массивов результат (0, 0)
+     * @param pool пул потоков
+     * @param cache общий кеш состояний, null - без кеша
+     * @return результаты поиска в порядке массивов
+     */
+    public static CycleSearchResult[] evaluateAll(int[][] arrays, ForkJoinPool pool, TrajectoryCache cache) {
+        if (arrays == null)
+            return new CycleSearchResult[0];
+        CycleSearchResult[] results = new CycleSearchResult[arrays.length];
+        long memoryBudget = SearchPlan.defaultMemoryBudget() / pool.getParallelism();
+        // по несколько частей на поток, чтобы потоки с короткими поисками забирали работу у остальных
+        int batchSize = Math.max(1, arrays.length / (pool.getParallelism() * 8));
+        pool.invoke(new BatchTask(arrays, results, 0, arrays.length, batchSize, memoryBudget, cache));
+        return results;
+    }
+
+    /***
+     * Поиск циклов для части пакета: делится пополам, пока часть больше batchSize
+     */
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] arrays;
+        private final CycleSearchResult[] results;
+        private final int from, to;
+        private final int batchSize;
+        private final long memoryBudget;
+        private final TrajectoryCache cache;
+
+        BatchTask(int[][] arrays, CycleSearchResult[] results, int from, int to, int batchSize, long memoryBudget,
+                  TrajectoryCache cache) {
+            this.arrays = arrays;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+            this.memoryBudget = memoryBudget;
+            this.cache = cache;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                SearchScratch scratch = new SearchScratch();
+                for (int i = from; i < to; i++)
+                    results[i] = evaluateRedistributionOfMaxValueCycle(arrays[i], memoryBudget, scratch, cache);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(arrays, results, from, middle, batchSize, memoryBudget, cache),
+                    new BatchTask(arrays, results, middle, to, batchSize, memoryBudget, cache));
+        }
+    }
+
+    /***
+     * Поиск цикла по плану, составленному из бюджета памяти
+     * @param scratch рабочие структуры поиска, переиспользуемые между вызовами
+     * @param cache общий кеш состояний, null - без кеша
+     */
+    private static CycleSearchResult evaluateRedistributionOfMaxValueCycle(int[] arr, long memoryBudget,
+                                                                           SearchScratch scratch,
+                                                                           TrajectoryCache cache) {
+        return evaluateRedistributionOfMaxValueCycle(arr, memoryBudget, scratch, cache, SearchGuard.unlimited());
+    }
+
+    /***
+     * Поиск цикла по плану с проверкой ограничений
+     * @param guard проверка ограничений поиска
+     * @throws SearchGuard.Stop если поиск остановлен ограничением
+     */
+    private static CycleSearchResult evaluateRedistributionOfMaxValueCycle(int[] arr, long memoryBudget,
+                                                                           SearchScratch scratch,
+                                                                           TrajectoryCache cache,
+                                                                           SearchGuard guard) {
+        if (arr == null || arr.length == 0)
+            return new CycleSearchResult(0, 0);
+        SearchPlan plan = SearchPlan.create(arr, memoryBudget);
+        long startNanos = SearchMetrics.ENABLED ? SearchMetrics.searchStarted(plan.getEngine().name(), arr.length) : 0;
+        CycleSearchResult result;
+        switch (plan.getEngine()) {
+            case TIME_EFFICIENT:
+                result = evaluateRedistributionOfMaxValueCycleTimeEfficient(arr, plan, scratch, cache, guard);
+                break;
+            case MEMORY_EFFICIENT:
+                result = evaluateRedistributionOfMaxValueCycleMemoryEfficient(arr, guard);
+                result = new CycleSearchResult(result.getCycleLength(), result.getIterationsRequired(), plan, -1);
+                break;
+            default:
+                result = findCycleBrent(new RedistributiveArray(arr), guard);
+                result = new CycleSearchResult(result.getCycleLength(), result.getIterationsRequired(), plan, -1);
+        }
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.searchFinished(plan.getEngine().name(), result, startNanos);
+        return result;
+    }
+
+    /***
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву. Работает быстрее, но расходует много памяти: хранит снимки всех пройденных состояний, соседние
+     * снимки делят неизмененные блоки ячеек (см. ArraySnapshot). Когда история доходит до предела, заданного планом,
+     * продолжает поиск алгоритмом Брента.
+     * @param arr непустой массив целых чисел
+     * @param plan план поиска
+     * @param scratch рабочие структуры поиска
+     * @param cache общий кеш состояний, null - без кеша
+     * @param guard проверка ограничений поиска
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    private static CycleSearchResult evaluateRedistributionOfMaxValueCycleTimeEfficient(int[] arr, SearchPlan plan,
+                                                                                        SearchScratch scratch,
+                                                                                        TrajectoryCache cache,
+                                                                                        SearchGuard guard) {
+        RedistributiveArray redistributiveArray = scratch.load(arr);
         int iterationCount = 0;
         int cyclePeriod = 0;
-        // карта: массив -> номер итерации
-        HashMap<RedistributiveArray, Integer> redistributionCash = new HashMap<>();
-        redistributionCash.put(redistributiveArray, iterationCount);
+        // карта: снимок состояния массива -> номер итерации
+        HashMap<ArraySnapshot, Integer> redistributionCash = scratch.history();
+        ArraySnapshot snapshot = ArraySnapshot.of(redistributiveArray);
+        redistributionCash.put(snapshot, iterationCount);
         while (true) {
+            if (cache != null) {
+                long cached = cache.get(snapshot.getFingerprint(), arr.length);
+                if (cached != TrajectoryCache.NO_ENTRY)
+                    return finishFromCache(redistributiveArray, iterationCount, redistributionCash, plan, cache,
+                            (int) (cached >> 32), (int) cached, guard);
+            }
+            if (iterationCount >= plan.getHistoryIterationLimit()) {
+                CycleSearchResult result = continueWithBrent(redistributiveArray, iterationCount, redistributionCash,
+                        plan, guard);
+                fillCache(cache, redistributionCash, arr.length, result.getPreperiodLength(), result.getCycleLength());
+                return result;
+            }
+            int maxValue = redistributiveArray.getMaxValue();
+            int maxValueIndex = redistributiveArray.getMaxValueIndex();
+            guard.beforeStep(redistributiveArray);
             ++iterationCount;
             redistributiveArray.redistributeMaxValue();
-            Integer previousEntry = redistributionCash.put(redistributiveArray, iterationCount);
+            snapshot = snapshot.next(redistributiveArray, maxValue, maxValueIndex);
+            Integer previousEntry = redistributionCash.put(snapshot, iterationCount);
             if (previousEntry != null) {
                 cyclePeriod = iterationCount - previousEntry;
+                fillCache(cache, redistributionCash, arr.length, previousEntry, cyclePeriod);
                 break;
             }
         }
-        return new CycleSearchResult(cyclePeriod, iterationCount);
+        return new CycleSearchResult(cyclePeriod, iterationCount, plan, -1);
+    }
+
+    /***
+     * Заканчивает поиск на состоянии, найденном в кеше. Если состояние лежит до цикла, все пройденные состояния
+     * тоже лежат до цикла, и предпериод - текущая итерация плюс расстояние из кеша. Если состояние в цикле,
+     * цикл мог начаться раньше (часть его состояний могла быть вытеснена из кеша), и начало цикла ищется
+     * по истории, как в continueWithBrent.
+     * @param redistributiveArray массив в текущем состоянии
+     * @param iterationCount номер текущей итерации
+     * @param history карта снимок состояния -> итерация для всех пройденных состояний
+     * @param distanceToCycle расстояние от текущего состояния до цикла по кешу
+     * @param cyclePeriod длина цикла по кешу
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    private static CycleSearchResult finishFromCache(RedistributiveArray redistributiveArray, int iterationCount,
+                                                     Map<ArraySnapshot, Integer> history, SearchPlan plan,
+                                                     TrajectoryCache cache, int distanceToCycle, int cyclePeriod,
+                                                     SearchGuard guard) {
+        int preperiodLength = distanceToCycle > 0
+                ? iterationCount + distanceToCycle
+                : findCycleStartInHistory(new RedistributiveArray(redistributiveArray), cyclePeriod, history, guard);
+        fillCache(cache, history, redistributiveArray.getLength(), preperiodLength, cyclePeriod);
+        return new CycleSearchResult(cyclePeriod, preperiodLength + cyclePeriod, plan, -1);
+    }
+
+    /***
+     * Запоминает в кеше пройденные состояния законченного поиска
+     * @param cache общий кеш состояний, null - без кеша
+     * @param history карта снимок состояния -> итерация
+     * @param preperiodLength номер итерации первого состояния цикла
+     */
+    private static void fillCache(TrajectoryCache cache, Map<ArraySnapshot, Integer> history, int length,
+                                  int preperiodLength, int cyclePeriod) {
+        if (cache == null)
+            return;
+        for (Map.Entry<ArraySnapshot, Integer> entry : history.entrySet())
+            cache.put(entry.getKey().getFingerprint(), length, Math.max(0, preperiodLength - entry.getValue()),
+                    cyclePeriod);
+    }
+
+    /***
+     * Продолжает поиск без пополнения истории: длина цикла ищется алгоритмом Брента от текущего состояния,
+     * начало цикла - по уже накопленной истории. Состояние через период от текущего лежит в цикле, только если
+     * цикл уже начался к текущей итерации; иначе в истории не находится ни одного состояния цикла, и начало цикла
+     * ищется проходом от текущего состояния
+     * @param redistributiveArray массив в текущем состоянии
+     * @param iterationCount номер текущей итерации
+     * @param history карта снимок состояния -> итерация для всех пройденных состояний, повторов среди которых нет
+     * @param plan план поиска
+     * @param guard проверка ограничений поиска
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    private static CycleSearchResult continueWithBrent(RedistributiveArray redistributiveArray, int iterationCount,
+                                                       Map<ArraySnapshot, Integer> history, SearchPlan plan,
+                                                       SearchGuard guard) {
+        int cyclePeriod = findCyclePeriodBrent(redistributiveArray, guard);
+        RedistributiveArray cycleWalker = new RedistributiveArray(redistributiveArray);
+        for (int i = 0; i < cyclePeriod; i++) {
+            guard.beforeStep(cycleWalker);
+            cycleWalker.redistributeMaxValue(); // в цикле, если цикл уже начался к текущей итерации
+        }
+        int preperiodLength = findCycleStartInHistory(cycleWalker, cyclePeriod, history, guard);
+        if (preperiodLength == Integer.MAX_VALUE) {
+            // цикл начинается после текущей итерации
+            preperiodLength = iterationCount + findPreperiodLength(redistributiveArray, cyclePeriod, guard);
+        }
+        return new CycleSearchResult(cyclePeriod, preperiodLength + cyclePeriod, plan, iterationCount);
+    }
+
+    /***
+     * Обходит цикл и ищет в истории самое раннее из его состояний - оно и есть начало цикла
+     * @param cycleWalker массив в одном из состояний цикла, сдвигается на длину цикла
+     * @param cyclePeriod длина цикла
+     * @param history карта снимок состояния -> итерация
+     * @param guard проверка ограничений поиска
+     * @return номер итерации начала цикла; Integer.MAX_VALUE, если ни одного состояния цикла в истории нет
+     */
+    private static int findCycleStartInHistory(RedistributiveArray cycleWalker, int cyclePeriod,
+                                               Map<ArraySnapshot, Integer> history, SearchGuard guard) {
+        ArraySnapshot cycleSnapshot = ArraySnapshot.of(cycleWalker);
+        int cycleStart = Integer.MAX_VALUE;
+        for (int i = 0; i < cyclePeriod; i++) {
+            Integer iteration = history.get(cycleSnapshot);
+            if (iteration != null)
+                cycleStart = Math.min(cycleStart, iteration);
+            int maxValue = cycleWalker.getMaxValue();
+            int maxValueIndex = cycleWalker.getMaxValueIndex();
+            guard.beforeStep(cycleWalker);
+            cycleWalker.redistributeMaxValue();
+            cycleSnapshot = cycleSnapshot.next(cycleWalker, maxValue, maxValueIndex);
+        }
+        return cycleStart;
     }
 
     /***
@@ -63,16 +364,348 @@ public abstract class DistributionCycles {
      * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
      * @return результат поиска (длина цикла, количество итераций поиска)
      */
-    private static CycleSearchResult evaluateRedistributionOfMaxValueCycleMemoryEfficient(int[] arr) {
+    static CycleSearchResult evaluateRedistributionOfMaxValueCycleMemoryEfficient(int[] arr) {
         if (arr == null || arr.length == 0)
             return new CycleSearchResult(0, 0);
+        return evaluateRedistributionOfMaxValueCycleMemoryEfficient(arr, SearchGuard.unlimited());
+    }
+
+    /***
+     * Поиск с историей в куче; история выбрасывается по окончании поиска, в том числе остановленного
+     * @param arr непустой массив целых чисел
+     * @param guard проверка ограничений поиска
+     */
+    private static CycleSearchResult evaluateRedistributionOfMaxValueCycleMemoryEfficient(int[] arr,
+                                                                                          SearchGuard guard) {
         RedistributiveLoggingArray redistributiveArray = new RedistributiveLoggingArray(arr);
+        try {
+            return evaluateRedistributionOfMaxValueCycle(redistributiveArray, guard);
+        }
+        finally {
+            redistributiveArray.getChangeLog().release();
+        }
+    }
+
+    /***
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву. Хранит историю итераций вне кучи, в отображенных в память файлах, которые удаляются по окончании
+     * поиска. Контрольные точки для восстановления не сохраняются: благодаря 64-битному отпечатку восстанавливать
+     * прошлое состояние почти всегда приходится один раз, для подтверждения цикла. Поэтому расход кучи
+     * не зависит от количества итераций.
+     * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @param logDirectory каталог для временных файлов истории
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     * @throws IOException если не удалось создать файлы истории
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycleOffHeap(int[] arr, Path logDirectory)
+            throws IOException {
+        if (arr == null || arr.length == 0)
+            return new CycleSearchResult(0, 0);
+        long startNanos = SearchMetrics.ENABLED ? SearchMetrics.searchStarted("OFF_HEAP", arr.length) : 0;
+        CycleSearchResult result;
+        try (ArrayChangeLog changeLog = ArrayChangeLog.createMapped(logDirectory)) {
+            result = evaluateRedistributionOfMaxValueCycle(new RedistributiveLoggingArray(arr, 0, changeLog),
+                    SearchGuard.unlimited());
+        }
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.searchFinished("OFF_HEAP", result, startNanos);
+        return result;
+    }
+
+    /***
+     * Поиск с историей вне кучи (см. evaluateRedistributionOfMaxValueCycleOffHeap(int[], Path)) для уже созданного
+     * массива, например отображенного из файла (см. RedistributiveArray.map): ячейки копируются туда же,
+     * где хранятся ячейки исходного массива; копии вне кучи создаются в каталоге истории
+     * @param start начальное состояние, не изменяется
+     * @param logDirectory каталог для временных файлов истории
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     * @throws IOException если не удалось создать файлы истории
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycleOffHeapFrom(RedistributiveArray start,
+                                                                                     Path logDirectory)
+            throws IOException {
+        if (start == null || start.getLength() == 0)
+            return new CycleSearchResult(0, 0);
+        long startNanos = SearchMetrics.ENABLED ? SearchMetrics.searchStarted("OFF_HEAP", start.getLength()) : 0;
+        CycleSearchResult result;
+        try (ArrayChangeLog changeLog = ArrayChangeLog.createMapped(logDirectory)) {
+            result = evaluateRedistributionOfMaxValueCycle(
+                    new RedistributiveLoggingArray(start, 0, changeLog, logDirectory), SearchGuard.unlimited());
+        }
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.searchFinished("OFF_HEAP", result, startNanos);
+        return result;
+    }
+
+    /***
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву, с сохранением хода поиска в файл (см. SearchCheckpoint). Каждые checkpointInterval итераций
+     * в файл дописываются только новые записи истории и текущие значения массива. Если файл для того же массива
+     * уже есть, поиск продолжается с последней сохраненной итерации. Если поток прерван, поиск останавливается
+     * на ближайшей контрольной точке с InterruptedException, и его можно продолжить повторным вызовом.
+     * Законченный поиск удаляет файл. Прошлые состояния для подтверждения цикла восстанавливаются без контрольных
+     * точек в памяти, как в evaluateRedistributionOfMaxValueCycleOffHeap.
+     * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @param checkpointFile файл контрольных точек
+     * @param checkpointInterval количество итераций между записями в файл, положительное
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     * @throws IOException если файл не удалось прочитать или записать
+     * @throws InterruptedException если поток прерван; ход поиска сохранен в файле
+     * @throws IllegalArgumentException если интервал не положителен
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycleResumable(int[] arr, Path checkpointFile,
+                                                                                   int checkpointInterval)
+            throws IOException, InterruptedException {
+        if (checkpointInterval <= 0)
+            throw new IllegalArgumentException("checkpointInterval must be positive: " + checkpointInterval);
+        if (arr == null || arr.length == 0)
+            return new CycleSearchResult(0, 0);
+        long startNanos = SearchMetrics.ENABLED ? SearchMetrics.searchStarted("RESUMABLE", arr.length) : 0;
+        SearchCheckpoint checkpoint = SearchCheckpoint.open(checkpointFile, arr);
+        CycleSearchResult result;
+        try {
+            RedistributiveLoggingArray redistributiveArray = checkpoint.getArray();
+            int iterationCount = redistributiveArray.getIterationCount();
+            while (!redistributiveArray.isCycleFound()) {
+                ++iterationCount;
+                redistributiveArray.redistributeMaxValue();
+                if (iterationCount % checkpointInterval == 0) {
+                    checkpoint.append();
+                    if (Thread.interrupted())
+                        throw new InterruptedException("search interrupted at iteration " + iterationCount);
+                }
+            }
+            result = new CycleSearchResult(redistributiveArray.getCyclePeriod(), iterationCount);
+        }
+        catch (IOException | InterruptedException | RuntimeException e) {
+            checkpoint.close();
+            throw e;
+        }
+        checkpoint.delete(checkpointFile);
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.searchFinished("RESUMABLE", result, startNanos);
+        return result;
+    }
+
+    /***
+     * Перераспределяет максимум в массиве с историей, пока не будет найден цикл
+     * @param redistributiveArray массив в начальном состоянии
+     * @param guard проверка ограничений поиска
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    private static CycleSearchResult evaluateRedistributionOfMaxValueCycle(RedistributiveLoggingArray redistributiveArray,
+                                                                           SearchGuard guard) {
         int iterationCount = 0;
         while (!redistributiveArray.isCycleFound()) {
+            guard.beforeStep(redistributiveArray);
             ++iterationCount;
             redistributiveArray.redistributeMaxValue();
         }
         return new CycleSearchResult(redistributiveArray.getCyclePeriod(), iterationCount);
     }
 
+    /***
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву. Шаги перераспределения выполняет отдельный поток, вызывающий поток параллельно ведет историю
+     * и ищет в ней повторы (см. PipelinedSearch). Выигрывает у однопоточного поиска на больших массивах,
+     * если у машины есть свободное ядро. Память - как у истории ArrayChangeLog, без контрольных точек.
+     * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCyclePipelined(int[] arr) {
+        if (arr == null || arr.length == 0)
+            return new CycleSearchResult(0, 0);
+        long startNanos = SearchMetrics.ENABLED ? SearchMetrics.searchStarted("PIPELINED", arr.length) : 0;
+        CycleSearchResult result = new PipelinedSearch(arr).run();
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.searchFinished("PIPELINED", result, startNanos);
+        return result;
+    }
+
+    /***
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву. Ищет цикл алгоритмом Брента на двух копиях массива и не хранит историю итераций:
+     * дополнительная память не зависит от количества итераций, но шагов перераспределения делается больше.
+     * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycleBrent(int[] arr) {
+        if (arr == null || arr.length == 0)
+            return new CycleSearchResult(0, 0);
+        return evaluateRedistributionOfMaxValueCycleBrentFrom(new RedistributiveArray(arr));
+    }
+
+    /***
+     * Поиск цикла алгоритмом Брента (см. evaluateRedistributionOfMaxValueCycleBrent(int[])) для уже созданного
+     * массива, например отображенного из файла (см. RedistributiveArray.map): обе копии массива хранятся там же,
+     * где ячейки исходного, а копии вне кучи - в каталоге копий исходного (см. RedistributiveArray.map(Path,
+     * ByteOrder, Path))
+     * @param start начальное состояние, не изменяется
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycleBrentFrom(RedistributiveArray start) {
+        if (start == null || start.getLength() == 0)
+            return new CycleSearchResult(0, 0);
+        long startNanos = SearchMetrics.ENABLED
+                ? SearchMetrics.searchStarted(SearchEngine.BRENT.name(), start.getLength())
+                : 0;
+        CycleSearchResult result = findCycleBrent(start, SearchGuard.unlimited());
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.searchFinished(SearchEngine.BRENT.name(), result, startNanos);
+        return result;
+    }
+
+    /***
+     * @param start непустой массив в начальном состоянии, не изменяется
+     * @param guard проверка ограничений поиска
+     * @return результат поиска алгоритмом Брента
+     */
+    private static CycleSearchResult findCycleBrent(RedistributiveArray start, SearchGuard guard) {
+        int cyclePeriod = findCyclePeriodBrent(start, guard);
+        int preperiodLength = findPreperiodLength(start, cyclePeriod, guard);
+        return new CycleSearchResult(cyclePeriod, preperiodLength + cyclePeriod);
+    }
+
+    /***
+     * Ищет длину цикла алгоритмом Брента: черепаха ждет на степенях двойки, заяц уходит вперед
+     * @param start начальное состояние, не изменяется
+     * @param guard проверка ограничений поиска
+     * @return длина цикла
+     */
+    private static int findCyclePeriodBrent(RedistributiveArray start, SearchGuard guard) {
+        RedistributiveArray tortoise = new RedistributiveArray(start);
+        RedistributiveArray hare = new RedistributiveArray(start);
+        hare.redistributeMaxValue();
+        int power = 1;
+        int cyclePeriod = 1;
+        while (!tortoise.hasSameState(hare)) {
+            if (power == cyclePeriod) {
+                tortoise.assign(hare);
+                power *= 2;
+                cyclePeriod = 0;
+            }
+            guard.beforeStep(hare);
+            hare.redistributeMaxValue();
+            ++cyclePeriod;
+        }
+        return cyclePeriod;
+    }
+
+    /***
+     * Ищет длину предпериода при известной длине цикла: заяц опережает черепаху ровно на длину цикла,
+     * они совпадают впервые в начале цикла
+     * @param start начальное состояние, не изменяется
+     * @param cyclePeriod длина цикла
+     * @param guard проверка ограничений поиска; шаг черепахи и зайца считается за один
+     * @return количество итераций от начального состояния до начала цикла
+     */
+    private static int findPreperiodLength(RedistributiveArray start, int cyclePeriod, SearchGuard guard) {
+        RedistributiveArray tortoise = new RedistributiveArray(start);
+        RedistributiveArray hare = new RedistributiveArray(start);
+        for (int i = 0; i < cyclePeriod; i++) {
+            guard.beforeStep(hare);
+            hare.redistributeMaxValue();
+        }
+        int preperiodLength = 0;
+        while (!tortoise.hasSameState(hare)) {
+            guard.beforeStep(hare);
+            tortoise.redistributeMaxValue();
+            hare.redistributeMaxValue();
+            ++preperiodLength;
+        }
+        return preperiodLength;
+    }
+
+    /***
+     * Возвращает количество итераций, необходимых для обнаружения цикла перераспределния максимального значения
+     * по массиву. Запоминает копии только выделенных состояний - тех, у которых старшие distinguishedBits бит
+     * перемешанного отпечатка равны нулю, то есть в среднем каждое 2^distinguishedBits-е состояние.
+     * Цикл обнаруживается по повторению выделенного состояния (или, если в цикле выделенных состояний нет,
+     * алгоритмом Брента), после чего длина предпериода находится повторным проходом от последнего выделенного
+     * состояния перед циклом. Чем больше distinguishedBits, тем меньше памяти и тем длиннее повторный проход:
+     * при нуле запоминается каждое состояние, при больших значениях поиск близок к алгоритму Брента.
+     * @param arr массив целых чисел, для null и пустого массива вернет (0, 0)
+     * @param distinguishedBits плотность выделенных состояний, от 0 до 63
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     * @throws IllegalArgumentException если плотность вне допустимых значений
+     */
+    public static CycleSearchResult evaluateRedistributionOfMaxValueCycleDistinguishedPoints(int[] arr,
+                                                                                             int distinguishedBits) {
+        if (distinguishedBits < 0 || distinguishedBits > 63)
+            throw new IllegalArgumentException("distinguishedBits must be between 0 and 63: " + distinguishedBits);
+        if (arr == null || arr.length == 0)
+            return new CycleSearchResult(0, 0);
+        long startNanos = SearchMetrics.ENABLED ? SearchMetrics.searchStarted("DISTINGUISHED_POINTS", arr.length) : 0;
+        CycleSearchResult result = findCycleDistinguishedPoints(arr, distinguishedBits);
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.searchFinished("DISTINGUISHED_POINTS", result, startNanos);
+        return result;
+    }
+
+    /***
+     * @param arr непустой массив
+     * @param distinguishedBits плотность выделенных состояний, от 0 до 63
+     * @return результат поиска по выделенным состояниям
+     */
+    private static CycleSearchResult findCycleDistinguishedPoints(int[] arr, int distinguishedBits) {
+        RedistributiveArray redistributiveArray = new RedistributiveArray(arr);
+        // выделенные состояния в порядке первого появления; начальное состояние запоминается всегда
+        List<RedistributiveArray> distinguishedStates = new ArrayList<>();
+        List<Integer> distinguishedIterations = new ArrayList<>();
+        HashMap<Long, Integer> fingerprintToDistinguishedState = new HashMap<>();
+        distinguishedStates.add(new RedistributiveArray(redistributiveArray));
+        distinguishedIterations.add(0);
+        fingerprintToDistinguishedState.put(redistributiveArray.getFingerprint(), 0);
+        // черепаха алгоритма Брента: находит цикл, в котором нет ни одного выделенного состояния
+        RedistributiveArray tortoise = new RedistributiveArray(redistributiveArray);
+        int tortoiseIteration = 0;
+        int power = 1;
+        int iterationCount = 0;
+        while (true) {
+            ++iterationCount;
+            redistributiveArray.redistributeMaxValue();
+            long fingerprint = redistributiveArray.getFingerprint();
+            if (isDistinguished(fingerprint, distinguishedBits)) {
+                Integer stateNumber = fingerprintToDistinguishedState.get(fingerprint);
+                if (stateNumber == null) {
+                    fingerprintToDistinguishedState.put(fingerprint, distinguishedStates.size());
+                    distinguishedStates.add(new RedistributiveArray(redistributiveArray));
+                    distinguishedIterations.add(iterationCount);
+                }
+                else if (distinguishedStates.get(stateNumber).hasSameState(redistributiveArray)) {
+                    // предыдущее выделенное состояние лежит до начала цикла, иначе оно повторилось бы раньше
+                    int startNumber = Math.max(stateNumber - 1, 0);
+                    int cyclePeriod = iterationCount - distinguishedIterations.get(stateNumber);
+                    int preperiodLength = distinguishedIterations.get(startNumber)
+                            + findPreperiodLength(distinguishedStates.get(startNumber), cyclePeriod,
+                                    SearchGuard.unlimited());
+                    return new CycleSearchResult(cyclePeriod, preperiodLength + cyclePeriod);
+                }
+            }
+            if (tortoise.hasSameState(redistributiveArray)) {
+                // выделенные состояния не позже черепахи лежат до начала цикла по той же причине
+                int startNumber = distinguishedIterations.size() - 1;
+                while (distinguishedIterations.get(startNumber) > tortoiseIteration)
+                    --startNumber;
+                int cyclePeriod = iterationCount - tortoiseIteration;
+                int preperiodLength = distinguishedIterations.get(startNumber)
+                        + findPreperiodLength(distinguishedStates.get(startNumber), cyclePeriod,
+                                SearchGuard.unlimited());
+                return new CycleSearchResult(cyclePeriod, preperiodLength + cyclePeriod);
+            }
+            if (iterationCount - tortoiseIteration == power) {
+                tortoise.assign(redistributiveArray);
+                tortoiseIteration = iterationCount;
+                power *= 2;
+            }
+        }
+    }
+
+    /***
+     * @return true, если старшие distinguishedBits бит перемешанного отпечатка равны нулю
+     */
+    private static boolean isDistinguished(long fingerprint, int distinguishedBits) {
+        return distinguishedBits == 0 || (fingerprint * 0x9E3779B97F4A7C15L) >>> (64 - distinguishedBits) == 0;
+    }
+
 }
@@ -0,0 +1,88 @@
+package cycles;
+
+import java.util.Arrays;
+
+/***
+ * Хранилище истории перераспределений в массивах примитивов в куче
+ */
+final class HeapChangeLogStorage implements ChangeLogStorage {
+    private long[] fingerprints;
+    private long[] maxima;
+    private int[] previousSameFingerprint;
+    private long[] tableFingerprints;
+    private int[] tableIterations;
+
+    HeapChangeLogStorage(int initialCapacity) {
+        fingerprints = new long[initialCapacity];
+        maxima = new long[initialCapacity];
+        previousSameFingerprint = new int[initialCapacity];
+    }
+
+    @Override
+    public void ensureRecordCapacity(int recordCount) {
+        if (recordCount <= fingerprints.length) return;
+        int capacity = Math.max(recordCount, 2 * fingerprints.length);
+        fingerprints = Arrays.copyOf(fingerprints, capacity);
+        maxima = Arrays.copyOf(maxima, capacity);
+        previousSameFingerprint = Arrays.copyOf(previousSameFingerprint, capacity);
+    }
+
+    @Override
+    public long getFingerprint(int index) {
+        return fingerprints[index];
+    }
+
+    @Override
+    public long getMaxima(int index) {
+        return maxima[index];
+    }
+
+    @Override
+    public int getPreviousSameFingerprint(int index) {
+        return previousSameFingerprint[index];
+    }
+
+    @Override
+    public void setRecord(int index, long fingerprint, long maxima, int previousSameFingerprint) {
+        this.fingerprints[index] = fingerprint;
+        this.maxima[index] = maxima;
+        this.previousSameFingerprint[index] = previousSameFingerprint;
+    }
+
+    @Override
+    public int getTableCapacity() {
+        return tableIterations.length;
+    }
+
+    @Override
+    public long getSlotFingerprint(int slot) {
+        return tableFingerprints[slot];
+    }
+
+    @Override
+    public int getSlotIteration(int slot) {
+        return tableIterations[slot];
+    }
+
+    @Override
+    public void setSlot(int slot, long fingerprint, int iteration) {
+        tableFingerprints[slot] = fingerprint;
+        tableIterations[slot] = iteration;
+    }
+
+    @Override
+    public void clearSlot(int slot) {
+        tableIterations[slot] = NO_ENTRY;
+    }
+
+    @Override
+    public void resetTable(int capacity) {
+        tableFingerprints = new long[capacity];
+        tableIterations = new int[capacity];
+        Arrays.fill(tableIterations, NO_ENTRY);
+    }
+
+    @Override
+    public void close() {
+    }
+}
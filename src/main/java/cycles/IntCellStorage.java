@@ -0,0 +1,89 @@
+package cycles;
+
+import java.util.Arrays;
+
+/***
+ * Ячейки в int[]: значение ячейки равно хранимому числу плюс смещение, с переполнением, как в int.
+ * Циклы по диапазонам выполняет RangeKernel.
+ */
+final class IntCellStorage extends CellStorage {
+    private final int[] cells;
+
+    IntCellStorage(int length) {
+        this.cells = new int[length];
+    }
+
+    private IntCellStorage(int[] cells) {
+        this.cells = cells;
+    }
+
+    @Override
+    int cellBytes() {
+        return 4;
+    }
+
+    @Override
+    int length() {
+        return cells.length;
+    }
+
+    @Override
+    int value(int index, int offset) {
+        return cells[index] + offset;
+    }
+
+    @Override
+    void set(int index, int value, int offset) {
+        cells[index] = value - offset;
+    }
+
+    @Override
+    void add(int index, int delta) {
+        cells[index] += delta;
+    }
+
+    @Override
+    long addToRange(int from, int to, int delta) {
+        return RangeKernel.INSTANCE.addToRange(cells, from, to, delta);
+    }
+
+    @Override
+    int leftmostMaxIndex(int offset, int from, int to) {
+        return RangeKernel.INSTANCE.leftmostMaxIndex(cells, offset, from, to);
+    }
+
+    @Override
+    void assignValues(int[] values) {
+        System.arraycopy(values, 0, cells, 0, cells.length);
+    }
+
+    @Override
+    void assign(CellStorage source) {
+        System.arraycopy(((IntCellStorage) source).cells, 0, cells, 0, cells.length);
+    }
+
+    @Override
+    CellStorage copyRange(int from, int to) {
+        return new IntCellStorage(Arrays.copyOfRange(cells, from, to));
+    }
+
+    @Override
+    CellStorage copyValues(int offset) {
+        int[] values = new int[cells.length];
+        copyValuesInto(offset, values);
+        return new IntCellStorage(values);
+    }
+
+    @Override
+    void copyValuesInto(int offset, int[] destination) {
+        for (int i = 0; i < cells.length; i++)
+            destination[i] = cells[i] + offset;
+    }
+
+    @Override
+    boolean valuesEqual(int offset, CellStorage other, int otherOffset) {
+        if (other instanceof IntCellStorage && offset == otherOffset)
+            return Arrays.equals(cells, ((IntCellStorage) other).cells);
+        return super.valuesEqual(offset, other, otherOffset);
+    }
+}
@@ -0,0 +1,68 @@
+package cycles;
+
+/***
+ * Результат поиска с ограничениями (см. SearchLimits): найденный цикл или сведения о том, где поиск остановлен
+ */
+public final class LimitedSearchResult {
+
+    /***
+     * Причина окончания поиска
+     */
+    public enum StopReason {
+        CYCLE_FOUND,
+        ITERATION_LIMIT,
+        DEADLINE,
+        CANCELLED
+    }
+
+    private final StopReason stopReason;
+    private final CycleSearchResult result;
+    private final long iterationsDone;
+    private final long fingerprint;
+
+    LimitedSearchResult(StopReason stopReason, CycleSearchResult result, long iterationsDone, long fingerprint) {
+        this.stopReason = stopReason;
+        this.result = result;
+        this.iterationsDone = iterationsDone;
+        this.fingerprint = fingerprint;
+    }
+
+    public boolean isCycleFound() {
+        return stopReason == StopReason.CYCLE_FOUND;
+    }
+
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    /***
+     * @return результат поиска; null, если поиск остановлен до нахождения цикла
+     */
+    public CycleSearchResult getResult() {
+        return result;
+    }
+
+    /***
+     * @return количество сделанных шагов перераспределения; у поиска без истории (алгоритм Брента) шагов больше,
+     * чем итераций до цикла
+     */
+    public long getIterationsDone() {
+        return iterationsDone;
+    }
+
+    /***
+     * @return отпечаток состояния, на котором поиск остановлен (см. RedistributiveArray.getFingerprint);
+     * 0, если цикл найден
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        return isCycleFound()
+                ? result + "; search steps = " + iterationsDone
+                : "Stopped: " + stopReason + "; search steps = " + iterationsDone
+                        + "; fingerprint = " + Long.toHexString(fingerprint);
+    }
+}
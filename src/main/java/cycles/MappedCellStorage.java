@@ -0,0 +1,193 @@
+package cycles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Ячейки int в файле, отображенном в память сегментами по SEGMENT_CELLS ячеек, для массивов, которые не помещаются
+ * в кучу: значение ячейки равно хранимому числу плюс смещение, как в IntCellStorage. Страницы файла подгружает
+ * и вытесняет операционная система. Копии до HEAP_COPY_LIMIT ячеек (например, листья ArraySnapshot) делаются
+ * в куче, более длинные - во временных файлах, которые удаляются сразу после отображения. Каталог временных
+ * файлов задается при создании хранилища и наследуется копиями; по умолчанию это java.io.tmpdir, который часто
+ * лежит в tmpfs, то есть в той же оперативной памяти, поэтому для больших массивов каталог лучше задавать явно.
+ */
+final class MappedCellStorage extends CellStorage {
+    private static final int SEGMENT_SHIFT = 28;
+    // количество ячеек в сегменте: 1 ГБ на сегмент
+    private static final int SEGMENT_CELLS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_CELLS - 1;
+    static final int HEAP_COPY_LIMIT = 1 << 20;
+
+    private final IntBuffer[] segments;
+    private final int length;
+    // каталог временных файлов для копий, null - java.io.tmpdir
+    private final Path directory;
+
+    private MappedCellStorage(IntBuffer[] segments, int length, Path directory) {
+        this.segments = segments;
+        this.length = length;
+        this.directory = directory;
+    }
+
+    /***
+     * Отображает файл с 32-битными значениями в память без копирования
+     * @param file файл, его длина кратна 4 и не больше 4 * Integer.MAX_VALUE байт
+     * @param order порядок байт значений в файле
+     * @param mode READ_WRITE - изменения пишутся в файл, PRIVATE - файл не изменяется, измененные страницы
+     *             копируются в память процесса
+     * @param directory каталог временных файлов для копий, null - java.io.tmpdir
+     * @return хранилище со значениями файла при нулевом смещении
+     * @throws IllegalArgumentException если длина файла не подходит
+     */
+    static MappedCellStorage map(Path file, ByteOrder order, FileChannel.MapMode mode, Path directory)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size % 4 != 0 || size / 4 > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("file size must be a multiple of 4 up to "
+                        + 4L * Integer.MAX_VALUE + " bytes: " + size);
+            return map(channel, (int) (size / 4), order, mode, directory);
+        }
+    }
+
+    /***
+     * @param directory каталог временного файла, он же каталог для копий; null - java.io.tmpdir
+     * @return хранилище заданной длины во временном файле, заполненное нулями
+     */
+    static MappedCellStorage allocate(int length, Path directory) {
+        try {
+            Path file = directory != null
+                    ? Files.createTempFile(directory, "cells", ".bin")
+                    : Files.createTempFile("cells", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return map(channel, length, ByteOrder.nativeOrder(), FileChannel.MapMode.READ_WRITE, directory);
+            }
+            finally {
+                // отображение остается действительным и после удаления файла
+                if (!file.toFile().delete())
+                    file.toFile().deleteOnExit();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedCellStorage map(FileChannel channel, int length, ByteOrder order, FileChannel.MapMode mode,
+                                         Path directory) throws IOException {
+        IntBuffer[] segments = new IntBuffer[(int) (((long) length + SEGMENT_CELLS - 1) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long from = (long) i << SEGMENT_SHIFT;
+            long cells = Math.min(SEGMENT_CELLS, length - from);
+            segments[i] = channel.map(mode, 4 * from, 4 * cells).order(order).asIntBuffer();
+        }
+        return new MappedCellStorage(segments, length, directory);
+    }
+
+    private int get(int index) {
+        return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+    }
+
+    private void put(int index, int value) {
+        segments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+    }
+
+    @Override
+    int cellBytes() {
+        return 4;
+    }
+
+    @Override
+    int length() {
+        return length;
+    }
+
+    @Override
+    int value(int index, int offset) {
+        return get(index) + offset;
+    }
+
+    @Override
+    void set(int index, int value, int offset) {
+        put(index, value - offset);
+    }
+
+    @Override
+    void add(int index, int delta) {
+        put(index, get(index) + delta);
+    }
+
+    @Override
+    long addToRange(int from, int to, int delta) {
+        for (int i = from; i < to; i++)
+            put(i, get(i) + delta);
+        return RangeKernel.INSTANCE.weightSum(from, to);
+    }
+
+    @Override
+    int leftmostMaxIndex(int offset, int from, int to) {
+        int max = get(from) + offset;
+        int maxIndex = from;
+        for (int i = from + 1; i < to; i++) {
+            int value = get(i) + offset;
+            if (value > max) {
+                max = value;
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    @Override
+    void assignValues(int[] values) {
+        for (int i = 0; i < length; i++)
+            put(i, values[i]);
+    }
+
+    @Override
+    void assign(CellStorage source) {
+        MappedCellStorage mapped = (MappedCellStorage) source;
+        for (int i = 0; i < segments.length; i++)
+            segments[i].duplicate().put(mapped.segments[i].duplicate());
+    }
+
+    @Override
+    CellStorage copyRange(int from, int to) {
+        return copyValues(0, from, to, directory);
+    }
+
+    @Override
+    CellStorage copyValues(int offset) {
+        return copyValues(offset, 0, length, directory);
+    }
+
+    @Override
+    CellStorage copyTo(Path directory) {
+        return copyValues(0, 0, length, directory);
+    }
+
+    /***
+     * @return значения ячеек с from по to не включительно при данном смещении, записанные при нулевом смещении
+     * в кучу или во временный файл в каталоге directory в зависимости от длины
+     */
+    private CellStorage copyValues(int offset, int from, int to, Path directory) {
+        CellStorage copy = to - from <= HEAP_COPY_LIMIT
+                ? new IntCellStorage(to - from)
+                : allocate(to - from, directory);
+        for (int i = from; i < to; i++)
+            copy.set(i - from, get(i) + offset, 0);
+        return copy;
+    }
+
+    @Override
+    void copyValuesInto(int offset, int[] destination) {
+        for (int i = 0; i < length; i++)
+            destination[i] = get(i) + offset;
+    }
+}
@@ -0,0 +1,116 @@
+package cycles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/***
+ * Хранилище истории перераспределений вне кучи: записи и хеш-таблица лежат в файлах, отображенных в память.
+ * Запись об итерации занимает 24 байта (отпечаток, максимум с индексом, ссылка на предыдущую итерацию
+ * с тем же отпечатком), ячейка таблицы - 16 байт. В куче остаются только ссылки на сегменты.
+ */
+final class MappedChangeLogStorage implements ChangeLogStorage {
+    private static final int RECORD_SIZE = 24;
+    private static final int FINGERPRINT_OFFSET = 0;
+    private static final int MAXIMA_OFFSET = 8;
+    private static final int PREVIOUS_OFFSET = 16;
+    private static final int RECORD_SEGMENT_SHIFT = 16;
+
+    // в ячейке таблицы хранится номер итерации + 1, чтобы заполненный нулями файл был пустой таблицей
+    private static final int SLOT_SIZE = 16;
+    private static final int SLOT_FINGERPRINT_OFFSET = 0;
+    private static final int SLOT_ITERATION_OFFSET = 8;
+    private static final int SLOT_SEGMENT_SHIFT = 16;
+
+    private final Path directory;
+    private final MappedRegion records;
+    private MappedRegion table;
+    private int tableCapacity;
+
+    /***
+     * @param directory каталог для файлов истории, файлы удаляются при закрытии
+     */
+    MappedChangeLogStorage(Path directory) throws IOException {
+        this.directory = directory;
+        this.records = new MappedRegion(Files.createTempFile(directory, "changelog-records", ".bin"),
+                RECORD_SIZE, RECORD_SEGMENT_SHIFT);
+    }
+
+    @Override
+    public void ensureRecordCapacity(int recordCount) {
+        if (recordCount > records.getCapacity())
+            records.ensureCapacity(recordCount);
+    }
+
+    @Override
+    public long getFingerprint(int index) {
+        return records.getLong(index, FINGERPRINT_OFFSET);
+    }
+
+    @Override
+    public long getMaxima(int index) {
+        return records.getLong(index, MAXIMA_OFFSET);
+    }
+
+    @Override
+    public int getPreviousSameFingerprint(int index) {
+        return records.getInt(index, PREVIOUS_OFFSET);
+    }
+
+    @Override
+    public void setRecord(int index, long fingerprint, long maxima, int previousSameFingerprint) {
+        records.putLong(index, FINGERPRINT_OFFSET, fingerprint);
+        records.putLong(index, MAXIMA_OFFSET, maxima);
+        records.putInt(index, PREVIOUS_OFFSET, previousSameFingerprint);
+    }
+
+    @Override
+    public int getTableCapacity() {
+        return tableCapacity;
+    }
+
+    @Override
+    public long getSlotFingerprint(int slot) {
+        return table.getLong(slot, SLOT_FINGERPRINT_OFFSET);
+    }
+
+    @Override
+    public int getSlotIteration(int slot) {
+        return table.getInt(slot, SLOT_ITERATION_OFFSET) - 1;
+    }
+
+    @Override
+    public void setSlot(int slot, long fingerprint, int iteration) {
+        table.putLong(slot, SLOT_FINGERPRINT_OFFSET, fingerprint);
+        table.putInt(slot, SLOT_ITERATION_OFFSET, iteration + 1);
+    }
+
+    @Override
+    public void clearSlot(int slot) {
+        table.putInt(slot, SLOT_ITERATION_OFFSET, 0);
+    }
+
+    @Override
+    public void resetTable(int capacity) {
+        try {
+            // новая таблица - новый файл: отображенный файл нельзя безопасно обрезать, старый удаляется
+            if (table != null)
+                table.close();
+            table = new MappedRegion(Files.createTempFile(directory, "changelog-index", ".bin"),
+                    SLOT_SIZE, Math.min(SLOT_SEGMENT_SHIFT, Integer.numberOfTrailingZeros(capacity)));
+            table.ensureCapacity(capacity);
+            tableCapacity = capacity;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+        if (table != null)
+            table.close();
+    }
+}
@@ -0,0 +1,92 @@
+package cycles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Файл записей фиксированной длины, отображенный в память сегментами.
+ * Сегменты отображаются по мере роста, файл удаляется при закрытии.
+ * Записи не пересекают границы сегментов, поэтому доступ к полю записи - одно чтение из одного буфера.
+ */
+final class MappedRegion implements Closeable {
+    private final Path file;
+    private final FileChannel channel;
+    private final int recordSize;
+    // log2 количества записей в сегменте
+    private final int segmentShift;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /***
+     * @param file файл, будет создан заново
+     * @param recordSize длина записи в байтах
+     * @param segmentShift log2 количества записей в одном сегменте
+     */
+    MappedRegion(Path file, int recordSize, int segmentShift) throws IOException {
+        this.file = file;
+        this.recordSize = recordSize;
+        this.segmentShift = segmentShift;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /***
+     * @return количество записей, под которые уже отображена память
+     */
+    long getCapacity() {
+        return (long) segments.size() << segmentShift;
+    }
+
+    /***
+     * Отображает новые сегменты, пока их не хватит на указанное количество записей.
+     * Файл увеличивается автоматически, новые записи заполнены нулями
+     */
+    void ensureCapacity(long recordCount) {
+        long segmentBytes = (long) recordSize << segmentShift;
+        try {
+            while (getCapacity() < recordCount)
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * segmentBytes, segmentBytes));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long getLong(long record, int fieldOffset) {
+        return segment(record).getLong(position(record, fieldOffset));
+    }
+
+    void putLong(long record, int fieldOffset, long value) {
+        segment(record).putLong(position(record, fieldOffset), value);
+    }
+
+    int getInt(long record, int fieldOffset) {
+        return segment(record).getInt(position(record, fieldOffset));
+    }
+
+    void putInt(long record, int fieldOffset, int value) {
+        segment(record).putInt(position(record, fieldOffset), value);
+    }
+
+    private MappedByteBuffer segment(long record) {
+        return segments.get((int) (record >>> segmentShift));
+    }
+
+    private int position(long record, int fieldOffset) {
+        return (int) (record & ((1L << segmentShift) - 1)) * recordSize + fieldOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
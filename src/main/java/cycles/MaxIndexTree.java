@@ -0,0 +1,153 @@
+package cycles;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/***
+ * Турнирное дерево индексов самого левого максимума.
+ * Ячейки массива разбиты на блоки фиксированной длины, листья дерева хранят индекс самого левого максимума
+ * в своем блоке, внутренние узлы - победителя среди потомков. После изменения k подряд идущих ячеек
+ * дерево обновляется за O(k + log n), самый левый максимум всего массива читается из корня за O(1).
+ * Значения ячеек дерево не хранит: значение ячейки i равно cells.value(i, offset), и общее смещение
+ * не меняет порядок ячеек, поэтому дерево не нужно обновлять при равномерной прибавке ко всем ячейкам.
+ * Если изменилось много блоков (см. ParallelKernel.PARALLEL_THRESHOLD), листья пересчитываются параллельно.
+ */
+final class MaxIndexTree {
+    // количество ячеек в одном листе дерева
+    static final int BLOCK_SIZE = 32;
+    // с какого количества блоков листья пересчитываются параллельно
+    private static final int PARALLEL_BLOCKS = ParallelKernel.PARALLEL_THRESHOLD / BLOCK_SIZE;
+    // количество блоков, которое задача пересчитывает последовательно
+    private static final int BLOCKS_PER_TASK = ParallelKernel.CHUNK_SIZE / BLOCK_SIZE;
+
+    private final int length;
+    // количество листьев, степень двойки
+    private final int leafCount;
+    // узлы дерева: корень в ячейке 1, потомки узла j в ячейках 2j и 2j + 1; -1 для пустого узла
+    private final int[] nodes;
+
+    MaxIndexTree(int length) {
+        this.length = length;
+        int blockCount = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int leaves = 1;
+        while (leaves < blockCount)
+            leaves <<= 1;
+        this.leafCount = leaves;
+        this.nodes = new int[2 * leaves];
+        Arrays.fill(nodes, -1);
+    }
+
+    /***
+     * Копирует узлы другого дерева того же размера
+     */
+    void assign(MaxIndexTree source) {
+        System.arraycopy(source.nodes, 0, nodes, 0, nodes.length);
+    }
+
+    /***
+     * @return индекс самого левого максимума, -1 для пустого массива
+     */
+    int leftmostMaxIndex() {
+        return nodes[1];
+    }
+
+    /***
+     * Перестраивает дерево целиком
+     */
+    void rebuild(CellStorage cells, int offset) {
+        if (length == 0) return;
+        updateBlocks(cells, offset, 0, (length - 1) / BLOCK_SIZE);
+    }
+
+    /***
+     * Обновляет дерево после изменения подряд идущих ячеек (циклически, если достигнут конец массива)
+     * @param startIndex индекс первой измененной ячейки
+     * @param count количество измененных ячеек, не больше длины массива
+     */
+    void update(CellStorage cells, int offset, int startIndex, int count) {
+        if (count <= 0) return;
+        int endIndex = startIndex + count - 1;
+        if (endIndex < length) {
+            updateBlocks(cells, offset, startIndex / BLOCK_SIZE, endIndex / BLOCK_SIZE);
+        }
+        else {
+            updateBlocks(cells, offset, startIndex / BLOCK_SIZE, (length - 1) / BLOCK_SIZE);
+            updateBlocks(cells, offset, 0, (endIndex - length) / BLOCK_SIZE);
+        }
+    }
+
+    /***
+     * Пересчитывает листья с firstBlock по lastBlock включительно и их предков
+     */
+    private void updateBlocks(CellStorage cells, int offset, int firstBlock, int lastBlock) {
+        if (lastBlock - firstBlock + 1 >= PARALLEL_BLOCKS)
+            new LeafTask(cells, offset, firstBlock, lastBlock + 1).invoke();
+        else
+            updateLeaves(cells, offset, firstBlock, lastBlock + 1);
+        int low = (leafCount + firstBlock) >> 1;
+        int high = (leafCount + lastBlock) >> 1;
+        while (low >= 1) {
+            for (int node = low; node <= high; node++)
+                nodes[node] = winner(cells, offset, nodes[2 * node], nodes[2 * node + 1]);
+            low >>= 1;
+            high >>= 1;
+        }
+    }
+
+    /***
+     * Пересчитывает листья с fromBlock включительно по toBlock не включительно
+     */
+    private void updateLeaves(CellStorage cells, int offset, int fromBlock, int toBlock) {
+        for (int block = fromBlock; block < toBlock; block++)
+            nodes[leafCount + block] = blockMaxIndex(cells, offset, block);
+    }
+
+    /***
+     * Параллельный пересчет листьев: каждый лист пишется ровно одной задачей
+     */
+    private final class LeafTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CellStorage cells;
+        private final int offset;
+        private final int fromBlock, toBlock;
+
+        LeafTask(CellStorage cells, int offset, int fromBlock, int toBlock) {
+            this.cells = cells;
+            this.offset = offset;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock <= BLOCKS_PER_TASK) {
+                updateLeaves(cells, offset, fromBlock, toBlock);
+                return;
+            }
+            int middle = (fromBlock + toBlock) >>> 1;
+            invokeAll(new LeafTask(cells, offset, fromBlock, middle), new LeafTask(cells, offset, middle, toBlock));
+        }
+    }
+
+    /***
+     * @return индекс самого левого максимума в блоке
+     */
+    private int blockMaxIndex(CellStorage cells, int offset, int block) {
+        int from = block * BLOCK_SIZE;
+        return cells.leftmostMaxIndex(offset, from, Math.min(from + BLOCK_SIZE, length));
+    }
+
+    /***
+     * @return индекс большей ячейки, при равенстве - левой; пустые узлы проигрывают всегда
+     */
+    private static int winner(CellStorage cells, int offset, int left, int right) {
+        if (right < 0) return left;
+        if (left < 0) return right;
+        int leftValue = cells.value(left, offset);
+        int rightValue = cells.value(right, offset);
+        if (rightValue > leftValue || rightValue == leftValue && right < left)
+            return right;
+        return left;
+    }
+}
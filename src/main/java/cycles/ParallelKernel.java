@@ -0,0 +1,55 @@
+package cycles;
+
+import java.util.concurrent.RecursiveTask;
+
+/***
+ * Параллельная обработка длинных диапазонов ячеек для очень больших массивов. Диапазон делится пополам задачами
+ * ForkJoin до частей по CHUNK_SIZE ячеек, каждая часть обрабатывается последовательно хранилищем ячеек,
+ * частичные суммы весов складываются. Задачи выполняются в пуле вызывающего потока, если он сам работает
+ * в ForkJoinPool, иначе - в общем пуле. Диапазоны короче PARALLEL_THRESHOLD обрабатываются вызывающим кодом последовательно.
+ */
+final class ParallelKernel {
+    // с какого количества ячеек диапазон обрабатывается параллельно
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    // количество ячеек в части диапазона, которую задача обрабатывает последовательно
+    static final int CHUNK_SIZE = 1 << 14;
+
+    private ParallelKernel() {
+    }
+
+    /***
+     * Прибавляет значение к ячейкам диапазона
+     * @param from индекс первой ячейки
+     * @param to индекс за последней ячейкой
+     * @return сумма весов ячеек диапазона в отпечатке массива (см. RedistributiveArray.weight)
+     */
+    static long addToRange(CellStorage cells, int from, int to, int value) {
+        return new AddTask(cells, from, to, value).invoke();
+    }
+
+    private static final class AddTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final CellStorage cells;
+        private final int from, to;
+        private final int value;
+
+        AddTask(CellStorage cells, int from, int to, int value) {
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+            this.value = value;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= CHUNK_SIZE)
+                return cells.addToRange(from, to, value);
+            int middle = (from + to) >>> 1;
+            AddTask right = new AddTask(cells, middle, to, value);
+            right.fork();
+            long leftWeight = new AddTask(cells, from, middle, value).compute();
+            return leftWeight + right.join();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package cycles;
+
+/***
+ * Конвейерный поиск цикла перераспределения: поток-производитель выполняет шаги перераспределения и публикует
+ * записи о состояниях в StateRingBuffer, вызывающий поток ведет историю (ArrayChangeLog) и ищет в ней повторы.
+ * Совпадение отпечатка и максимума с прошлой итерацией только кандидат в цикл: производитель останавливается,
+ * массив откатывается к итерации кандидата, его копия - еще на длину цикла назад, и состояния сравниваются
+ * целиком. Кандидаты проверяются по всей цепочке итераций с тем же отпечатком, от недавних к ранним,
+ * как в RedistributiveLoggingArray: за ложным кандидатом может стоять настоящий. Если ложны все,
+ * производитель запускается заново с итерации кандидата.
+ */
+final class PipelinedSearch {
+    private static final int RING_CAPACITY = 1 << 10;
+
+    private final RedistributiveArray array;
+    private final ArrayChangeLog changeLog = new ArrayChangeLog();
+    private final StateRingBuffer ring = new StateRingBuffer(RING_CAPACITY);
+    private volatile boolean stopped;
+    private volatile Throwable producerFailure;
+    private Thread producer;
+
+    /***
+     * @param arr непустой массив
+     */
+    PipelinedSearch(int[] arr) {
+        this.array = new RedistributiveArray(arr);
+    }
+
+    /***
+     * @return результат поиска (длина цикла, количество итераций поиска)
+     */
+    CycleSearchResult run() {
+        changeLog.addEntry(array.getFingerprint(), array.getMaxValue(), array.getMaxValueIndex());
+        startProducer();
+        try {
+            return search();
+        }
+        finally {
+            stopped = true; // если поиск прерван исключением, производитель не должен работать вечно
+            changeLog.release();
+        }
+    }
+
+    private CycleSearchResult search() {
+        int iterationCount = 0;
+        while (true) {
+            awaitRecord();
+            ++iterationCount;
+            long fingerprint = ring.fingerprint();
+            int maxValue = ring.maxValue();
+            int maxValueIndex = ring.maxValueIndex();
+            ring.advance();
+            int candidate = findCandidate(fingerprint, maxValue, maxValueIndex);
+            changeLog.addEntry(fingerprint, maxValue, maxValueIndex);
+            if (candidate < 0)
+                continue;
+            stopProducer();
+            rollbackTo(iterationCount);
+            int cycleStart = verifyCandidates(iterationCount, candidate, maxValue, maxValueIndex);
+            if (cycleStart >= 0)
+                return new CycleSearchResult(iterationCount - cycleStart, iterationCount);
+            // совпадение отпечатков без совпадения состояний: продолжаем с текущей итерации
+            ring.clear();
+            startProducer();
+        }
+    }
+
+    /***
+     * @return последняя итерация с тем же отпечатком и максимумом, -1 если таких нет
+     */
+    private int findCandidate(long fingerprint, int maxValue, int maxValueIndex) {
+        return nextCandidate(changeLog.getLastIterationMatchingFingerprint(fingerprint), maxValue, maxValueIndex);
+    }
+
+    /***
+     * @param iteration итерация из цепочки итераций с тем же отпечатком, с которой начинается поиск
+     * @return первая итерация цепочки, начиная с данной, с тем же максимумом; -1 если таких нет
+     */
+    private int nextCandidate(int iteration, int maxValue, int maxValueIndex) {
+        for (; iteration >= 0; iteration = changeLog.getPreviousIterationMatchingFingerprint(iteration)) {
+            if (changeLog.getMaxValue(iteration) == maxValue && changeLog.getMaxValueIndex(iteration) == maxValueIndex)
+                return iteration;
+        }
+        return -1;
+    }
+
+    /***
+     * Откатывает остановленный производителем массив к итерации; записи об итерациях, которые производитель
+     * успел сделать сверх нее, берутся из буфера
+     */
+    private void rollbackTo(int iteration) {
+        int bufferedCount = 0;
+        int[] bufferedMaxValues = new int[RING_CAPACITY];
+        int[] bufferedMaxIndices = new int[RING_CAPACITY];
+        while (ring.hasNext()) {
+            bufferedMaxValues[bufferedCount] = ring.maxValue();
+            bufferedMaxIndices[bufferedCount] = ring.maxValueIndex();
+            ++bufferedCount;
+            ring.advance();
+        }
+        // массив на итерации iteration + bufferedCount, откат с итерации s на s - 1 требует максимума итерации s - 1
+        for (int k = bufferedCount - 1; k >= 0; k--) {
+            if (k == 0)
+                array.rollback(changeLog.getMaxValue(iteration), changeLog.getMaxValueIndex(iteration));
+            else
+                array.rollback(bufferedMaxValues[k - 1], bufferedMaxIndices[k - 1]);
+        }
+    }
+
+    /***
+     * Сравнивает состояние массива на текущей итерации с состояниями кандидатов, от недавнего к раннему;
+     * копия массива откатывается от кандидата к кандидату, без повторных откатов от текущей итерации
+     * @param iteration текущая итерация
+     * @param candidate самый недавний кандидат
+     * @return итерация кандидата с тем же состоянием; -1, если все кандидаты ложные
+     */
+    private int verifyCandidates(int iteration, int candidate, int maxValue, int maxValueIndex) {
+        RedistributiveArray candidateState = new RedistributiveArray(array);
+        int stateIteration = iteration;
+        for (; candidate >= 0;
+             candidate = nextCandidate(changeLog.getPreviousIterationMatchingFingerprint(candidate), maxValue,
+                     maxValueIndex)) {
+            for (; stateIteration > candidate; stateIteration--)
+                candidateState.rollback(changeLog.getMaxValue(stateIteration - 1),
+                        changeLog.getMaxValueIndex(stateIteration - 1));
+            boolean sameState = candidateState.hasSameState(array);
+            if (SearchMetrics.ENABLED) {
+                SearchMetrics.CYCLE_VERIFICATIONS.increment();
+                if (!sameState)
+                    SearchMetrics.FALSE_CYCLE_CANDIDATES.increment();
+            }
+            if (sameState)
+                return candidate;
+        }
+        return -1;
+    }
+
+    /***
+     * Ждет записи в буфере; если производитель упал, пробрасывает его исключение
+     */
+    private void awaitRecord() {
+        while (!ring.hasNext()) {
+            if (producerFailure != null)
+                throw new IllegalStateException("redistribution producer failed", producerFailure);
+            Thread.yield();
+        }
+    }
+
+    private void startProducer() {
+        stopped = false;
+        producer = new Thread(this::produce, "redistribution-producer");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /***
+     * Останавливает производителя и дожидается его завершения; после этого массив принадлежит вызывающему потоку
+     */
+    private void stopProducer() {
+        stopped = true;
+        boolean interrupted = false;
+        while (producer.isAlive()) {
+            try {
+                producer.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /***
+     * Цикл производителя: шаг делается, только когда для его записи есть место, поэтому каждое состояние
+     * массива опубликовано
+     */
+    private void produce() {
+        try {
+            while (!stopped) {
+                if (!ring.hasRoom()) {
+                    Thread.yield();
+                    continue;
+                }
+                array.redistributeMaxValue();
+                ring.publish(array.getFingerprint(), array.getMaxValue(), array.getMaxValueIndex());
+            }
+        }
+        catch (Throwable e) {
+            producerFailure = e;
+        }
+    }
+}
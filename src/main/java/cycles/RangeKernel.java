@@ -0,0 +1,53 @@
+package cycles;
+
+/***
+ * Вычислительное ядро для подряд идущих ячеек: прибавка к диапазону с подсчетом весов отпечатка и поиск самого
+ * левого максимума. Реализация выбирается один раз при загрузке класса: векторная (VectorRangeKernel),
+ * если JVM запущена с модулем jdk.incubator.vector, иначе скалярная. Выбор можно задать системным свойством
+ * cycles.kernel=scalar|vector.
+ */
+abstract class RangeKernel {
+    static final RangeKernel INSTANCE = select();
+
+    /***
+     * Прибавляет значение к ячейкам диапазона
+     * @param from индекс первой ячейки
+     * @param to индекс за последней ячейкой
+     * @return сумма весов ячеек диапазона в отпечатке массива (см. RedistributiveArray.weight)
+     */
+    abstract long addToRange(int[] data, int from, int to, int value);
+
+    /***
+     * @param from индекс первой ячейки
+     * @param to индекс за последней ячейкой
+     * @return сумма весов ячеек диапазона в отпечатке массива
+     */
+    abstract long weightSum(int from, int to);
+
+    /***
+     * @param from индекс первой ячейки, диапазон непустой
+     * @param to индекс за последней ячейкой
+     * @return индекс самого левого максимума значений data[i] + offset в диапазоне
+     */
+    abstract int leftmostMaxIndex(int[] data, int offset, int from, int to);
+
+    /***
+     * @return название реализации
+     */
+    abstract String name();
+
+    private static RangeKernel select() {
+        String requested = System.getProperty("cycles.kernel", "");
+        if (!requested.equals("scalar")) {
+            try {
+                // класс загружается по имени, чтобы без модуля jdk.incubator.vector не было ошибок связывания
+                return (RangeKernel) Class.forName("cycles.VectorRangeKernel").getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | LinkageError e) {
+                if (requested.equals("vector"))
+                    throw new IllegalStateException("vector kernel requires --add-modules jdk.incubator.vector", e);
+            }
+        }
+        return new ScalarRangeKernel();
+    }
+}
@@ -1,45 +1,233 @@
 package cycles;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /***
- * Массив с функцией перераспределения максимума по остальным ячейкам
+ * Массив с функцией перераспределения максимума по остальным ячейкам.
+ * Равномерная прибавка ко всем ячейкам хранится отдельно, как общее смещение, поэтому одно перераспределение
+ * изменяет только обнуляемую ячейку и ячейки, получившие остаток от деления.
+ * Новый максимум после распределения берется из турнирного дерева, которое обновляется только по измененным ячейкам.
+ * Ширина ячеек выбирается при создании по сумме массива (см. CellStorage).
  */
 public class RedistributiveArray {
-    protected int[] data;
+    // значение ячейки i равно cells.value(i, offset): хранимое число плюс смещение по модулю ширины ячейки
+    CellStorage cells;
+    protected int offset;
     protected int maxValue, maxValueIndex;
+    private MaxIndexTree maxIndexTree;
+    // 64-битный отпечаток массива, обновляется поячеечно при каждом изменении
+    protected long fingerprint;
+    // сумма весов всех ячеек: на столько меняется отпечаток при прибавлении единицы ко всем ячейкам
+    protected long weightSum;
 
     /***
      * @param data null воспринимается как пустой массив
      */
     public RedistributiveArray(int[] data) {
         if (data == null || data.length == 0) {
-            this.data = new int[0];
+            this.cells = new IntCellStorage(0);
+            this.maxIndexTree = new MaxIndexTree(0);
+            this.fingerprint = fingerprintOf(null);
             return;
         }
-        this.data = new int[data.length];
-        this.maxValue = data[0];
-        this.maxValueIndex = 0;
-        for (int i = 0; i < data.length; i++) {
-            this.data[i] = data[i];
-            if (maxValue < data[i]) {
-                maxValue = data[i];
-                maxValueIndex = i;
-            }
-        }
+        this.cells = CellStorage.forValues(data);
+        this.maxIndexTree = new MaxIndexTree(data.length);
+        this.weightSum = weightSum(data.length);
+        assign(data);
+    }
+
+    /***
+     * Создает массив поверх готового хранилища ячеек без копирования, значения берутся при нулевом смещении
+     * @param cells хранилище ячеек
+     */
+    RedistributiveArray(CellStorage cells) {
+        this.cells = cells;
+        this.maxIndexTree = new MaxIndexTree(cells.length());
+        this.fingerprint = cellsFingerprint();
+        if (cells.length() == 0)
+            return;
+        this.weightSum = weightSum(cells.length());
+        maxIndexTree.rebuild(cells, offset);
+        findMaxValue();
+    }
+
+    /***
+     * Отображает файл с 32-битными значениями ячеек в память (см. MappedCellStorage): массив не загружается в кучу,
+     * страницы файла подгружает операционная система. Файл не изменяется, измененные страницы копируются
+     * в память процесса; файл должен быть открываемым на запись, этого требует такое отображение.
+     * Копии массива, которые делают способы поиска цикла, тоже создаются вне кучи, во временных файлах
+     * в java.io.tmpdir (см. map(Path, ByteOrder, Path)).
+     * @param file файл значений, длина кратна 4
+     * @param order порядок байт значений в файле
+     * @return массив со значениями файла
+     * @throws IOException если файл не удалось открыть или отобразить
+     * @throws IllegalArgumentException если длина файла не кратна 4 или больше 4 * Integer.MAX_VALUE байт
+     */
+    public static RedistributiveArray map(Path file, ByteOrder order) throws IOException {
+        return map(file, order, null);
+    }
+
+    /***
+     * Отображает файл с 32-битными значениями ячеек в память, как map(Path, ByteOrder), с заданным каталогом
+     * для временных файлов копий массива. java.io.tmpdir часто лежит в tmpfs, и копии массива больше кучи
+     * снова оказались бы в оперативной памяти; каталог на диске этого избегает.
+     * @param file файл значений, длина кратна 4
+     * @param order порядок байт значений в файле
+     * @param copyDirectory каталог временных файлов копий, null - java.io.tmpdir
+     * @return массив со значениями файла
+     * @throws IOException если файл не удалось открыть или отобразить
+     * @throws IllegalArgumentException если длина файла не кратна 4 или больше 4 * Integer.MAX_VALUE байт
+     */
+    public static RedistributiveArray map(Path file, ByteOrder order, Path copyDirectory) throws IOException {
+        return new RedistributiveArray(MappedCellStorage.map(file, order, FileChannel.MapMode.PRIVATE,
+                copyDirectory));
     }
 
     public RedistributiveArray(RedistributiveArray toCopy) {
+        this(toCopy, null);
+    }
+
+    /***
+     * @param toCopy копируемый массив, null воспринимается как пустой массив
+     * @param copyDirectory каталог временных файлов для копии массива вне кучи и ее копий;
+     *                      null - тот же, что у копируемого массива
+     */
+    RedistributiveArray(RedistributiveArray toCopy, Path copyDirectory) {
         if (toCopy == null) {
-            this.data = new int[0];
+            this.cells = new IntCellStorage(0);
+            this.maxIndexTree = new MaxIndexTree(0);
+            this.fingerprint = fingerprintOf(null);
             return;
         }
-        this.data = Arrays.copyOf(toCopy.data, toCopy.data.length);
+        this.cells = copyDirectory != null ? toCopy.cells.copyTo(copyDirectory) : toCopy.cells.copy();
+        this.maxIndexTree = new MaxIndexTree(cells.length());
+        this.maxIndexTree.assign(toCopy.maxIndexTree);
+        this.offset = toCopy.offset;
         this.maxValue = toCopy.maxValue;
         this.maxValueIndex = toCopy.maxValueIndex;
+        this.fingerprint = toCopy.fingerprint;
+        this.weightSum = toCopy.weightSum;
+    }
+
+    /***
+     * Перезаписывает массив значениями из другого массива той же длины вместе с данными о максимуме
+     * @param source массив-источник
+     */
+    void assign(RedistributiveArray source) {
+        if (cells.getClass() == source.cells.getClass())
+            cells.assign(source.cells);
+        else
+            cells = source.cells.copy();
+        maxIndexTree.assign(source.maxIndexTree);
+        offset = source.offset;
+        maxValue = source.maxValue;
+        maxValueIndex = source.maxValueIndex;
+        fingerprint = source.fingerprint;
+    }
+
+    /***
+     * Перезаписывает массив значениями из обычного массива той же длины, максимум ищется заново
+     * @param source массив-источник
+     */
+    void assign(int[] source) {
+        assignValues(source);
+        findMaxValue();
+    }
+
+    /***
+     * Перезаписывает массив значениями из обычного массива той же длины с заданными данными о максимуме
+     * @param source массив-источник
+     * @param maxValue максимум, по которому пойдет следующее распределение
+     * @param maxValueIndex индекс максимума
+     */
+    void assign(int[] source, int maxValue, int maxValueIndex) {
+        assignValues(source);
+        this.maxValue = maxValue;
+        this.maxValueIndex = maxValueIndex;
+    }
+
+    /***
+     * Перезаписывает массив значениями из хранилища той же длины, записанными при нулевом смещении
+     * (см. CellStorage.copyValues), с заданными данными о максимуме
+     * @param source хранилище-источник
+     * @param maxValue максимум, по которому пойдет следующее распределение
+     * @param maxValueIndex индекс максимума
+     */
+    void assign(CellStorage source, int maxValue, int maxValueIndex) {
+        if (cells.getClass() == source.getClass())
+            cells.assign(source);
+        else
+            cells = source.copy();
+        offset = 0;
+        maxIndexTree.rebuild(cells, offset);
+        this.maxValue = maxValue;
+        this.maxValueIndex = maxValueIndex;
+        fingerprint = cellsFingerprint();
+    }
+
+    /***
+     * @return отпечаток, посчитанный заново по всем ячейкам
+     */
+    private long cellsFingerprint() {
+        long fingerprint = mix(~(long) cells.length());
+        for (int i = 0; i < cells.length(); i++)
+            fingerprint += cells.value(i, offset) * weight(i);
+        return fingerprint;
+    }
+
+    /***
+     * Записывает значения при нулевом смещении; если они шире ячеек, заменяет хранилище более широким
+     */
+    private void assignValues(int[] source) {
+        if (cells.canHold(source))
+            cells.assignValues(source);
+        else
+            cells = CellStorage.forValues(source);
+        offset = 0;
+        maxIndexTree.rebuild(cells, offset);
+        fingerprint = fingerprintOf(source);
+    }
+
+    /***
+     * Сравнивает состояния массивов: значения ячеек и данные о максимуме, по которому пойдет следующее распределение
+     * @param other массив той же длины
+     * @return true, если следующие распределения обоих массивов дадут одинаковый результат
+     */
+    boolean hasSameState(RedistributiveArray other) {
+        return fingerprint == other.fingerprint
+                && maxValue == other.maxValue
+                && maxValueIndex == other.maxValueIndex
+                && contentEquals(other);
+    }
+
+    /***
+     * @return true, если значения ячеек массивов совпадают
+     */
+    boolean contentEquals(RedistributiveArray other) {
+        return cells.valuesEqual(offset, other.cells, other.offset);
+    }
+
+    /***
+     * @return true, если значения ячеек совпадают со значениями обычного массива
+     */
+    boolean contentEquals(int[] values) {
+        if (values == null || cells.length() != values.length) return false;
+        for (int i = 0; i < values.length; i++) {
+            if (cells.value(i, offset) != values[i])
+                return false;
+        }
+        return true;
     }
 
     /***
@@ -47,35 +235,36 @@ public class RedistributiveArray {
      * конец массива), обновляет максимум. Если длина массива меньше 2, операций не производится.
      */
     public void redistributeMaxValue() {
-        if (data.length <= 1 || maxValue == 0) return; // нечего распределять
-        int distributionValue = maxValue / data.length; // на сколько увеличить все ячейки в массиве
-        int surplusCount = maxValue % data.length; // сколько следующих от максимума ячеек увеличить ещё на 1 (распределяем остаток от деления)
+        int length = cells.length();
+        if (length <= 1 || maxValue == 0) return; // нечего распределять
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.STEPS.increment();
+        int distributionValue = maxValue / length; // на сколько увеличить все ячейки в массиве
+        int surplusCount = maxValue % length; // сколько следующих от максимума ячеек увеличить ещё на 1 (распределяем остаток от деления)
         int surplus = 1;
         if (maxValue < 0) { // поправка на минус
             surplusCount *= -1;
             surplus *= -1;
         }
-        // обнуляем максимум и обходим со следующей ячейки
-        data[maxValueIndex] = 0;
-        int startIndex = (maxValueIndex + 1) % data.length;
-        maxValue = data[startIndex];
-        maxValueIndex = startIndex;
-        int i = startIndex;
-        do {
-            if (surplusCount-- > 0) {
-                data[i] += distributionValue + surplus;
-            }
-            else {
-                data[i] += distributionValue;
-            }
-            if (data[i] > maxValue
-                    || data[i] == maxValue && i < maxValueIndex) { // самый левый максимум
-                maxValue = data[i];
-                maxValueIndex = i;
-            }
-            if (++i >= data.length)
-                i = 0;
-        } while (i != startIndex);
+        int startIndex = (maxValueIndex + 1) % length;
+        // значение следующей за максимумом ячейки до распределения: исходный обход начинал с него поиск нового
+        // максимума, и для отрицательных значений оно может остаться максимумом, даже если ячейка уменьшилась
+        int startValue = cells.value(startIndex, offset);
+        // обнуляем максимум
+        fingerprint -= cells.value(maxValueIndex, offset) * weight(maxValueIndex);
+        cells.set(maxValueIndex, 0, offset);
+        maxIndexTree.update(cells, offset, maxValueIndex, 1);
+        // равномерная прибавка ко всем ячейкам
+        offset += distributionValue;
+        fingerprint += distributionValue * weightSum;
+        // остаток достается следующим за максимумом ячейкам
+        fingerprint += surplus * addToRange(startIndex, surplusCount, surplus);
+        findMaxValue();
+        if (startValue > maxValue
+                || startValue == maxValue && startIndex < maxValueIndex) {
+            maxValue = startValue;
+            maxValueIndex = startIndex;
+        }
     }
 
     /***
@@ -84,44 +273,142 @@ public class RedistributiveArray {
      * @param previousMaxIndex индекс предыдущего максимума
      */
     public void rollback(int previousMaxValue, int previousMaxIndex) {
-        if (data.length <= 1 || previousMaxValue == 0) return; // ничего не распределяли
-        int distributionValue = previousMaxValue / data.length; // на сколько увеличили все ячейки в массиве
-        int surplusCount = previousMaxValue % data.length; // сколько следующих от максимума ячеек увеличили ещё на 1
+        int length = cells.length();
+        if (length <= 1 || previousMaxValue == 0) return; // ничего не распределяли
+        if (SearchMetrics.ENABLED)
+            SearchMetrics.ROLLBACKS.increment();
+        int distributionValue = previousMaxValue / length; // на сколько увеличили все ячейки в массиве
+        int surplusCount = previousMaxValue % length; // сколько следующих от максимума ячеек увеличили ещё на 1
         int surplus = 1;
         if (previousMaxValue < 0) { // поправка на минус
             surplusCount *= -1;
             surplus *= -1;
         }
-        data[previousMaxIndex] += previousMaxValue;
-        int startIndex = (previousMaxIndex + 1) % data.length;
-        int i = startIndex;
-        do {
-            if (surplusCount-- > 0) {
-                data[i] -= (distributionValue + surplus);
+        cells.add(previousMaxIndex, previousMaxValue);
+        fingerprint += previousMaxValue * weight(previousMaxIndex);
+        maxIndexTree.update(cells, offset, previousMaxIndex, 1);
+        offset -= distributionValue;
+        fingerprint -= distributionValue * weightSum;
+        int startIndex = (previousMaxIndex + 1) % length;
+        fingerprint -= surplus * addToRange(startIndex, surplusCount, -surplus);
+        maxValue = previousMaxValue;
+        maxValueIndex = previousMaxIndex;
+    }
+
+    /***
+     * Прибавляет значение к ячейкам, идущим подряд (циклически, если достигнут конец массива)
+     * @param startIndex индекс первой ячейки
+     * @param count количество ячеек, не больше длины массива
+     * @param value прибавляемое значение
+     * @return сумма весов измененных ячеек
+     */
+    private long addToRange(int startIndex, int count, int value) {
+        long rangeWeight;
+        int length = cells.length();
+        int endIndex = startIndex + count;
+        if (count >= ParallelKernel.PARALLEL_THRESHOLD) {
+            // длинный диапазон обрабатывается по частям параллельно, перенос через конец массива - отдельной частью
+            if (endIndex <= length) {
+                rangeWeight = ParallelKernel.addToRange(cells, startIndex, endIndex, value);
             }
             else {
-                data[i] -= distributionValue;
+                rangeWeight = ParallelKernel.addToRange(cells, startIndex, length, value)
+                        + ParallelKernel.addToRange(cells, 0, endIndex - length, value);
             }
-            if (++i >= data.length)
-                i = 0;
-        } while (i != startIndex);
-        maxValue = previousMaxValue;
-        maxValueIndex = previousMaxIndex;
+        }
+        else if (endIndex <= length) {
+            rangeWeight = cells.addToRange(startIndex, endIndex, value);
+        }
+        else {
+            rangeWeight = cells.addToRange(startIndex, length, value) + cells.addToRange(0, endIndex - length, value);
+        }
+        maxIndexTree.update(cells, offset, startIndex, count);
+        return rangeWeight;
+    }
+
+    /***
+     * Берет самый левый максимум всего массива из дерева
+     */
+    private void findMaxValue() {
+        maxValueIndex = maxIndexTree.leftmostMaxIndex();
+        maxValue = cells.value(maxValueIndex, offset);
     }
 
     /***
      * Возвращает копию массива
      */
     public int[] getData() {
-        return this.data.clone();
+        int[] values = new int[cells.length()];
+        cells.copyValuesInto(offset, values);
+        return values;
+    }
+
+    /***
+     * Копирует значения ячеек в массив вызывающего кода без выделения памяти
+     * @param destination массив не короче этого
+     * @throws IllegalArgumentException если массив короче
+     */
+    public void copyInto(int[] destination) {
+        if (destination.length < cells.length())
+            throw new IllegalArgumentException("destination is shorter than the array");
+        cells.copyValuesInto(offset, destination);
+    }
+
+    /***
+     * Копирует значения ячеек с from по to не включительно в начало массива вызывающего кода без выделения памяти
+     * @param destination массив длиной не меньше to - from
+     * @throws IndexOutOfBoundsException если диапазон выходит за границы массива или не помещается в destination
+     */
+    public void copyRangeInto(int from, int to, int[] destination) {
+        Objects.checkFromToIndex(from, to, cells.length());
+        Objects.checkFromIndexSize(0, to - from, destination.length);
+        for (int i = from; i < to; i++)
+            destination[i - from] = cells.value(i, offset);
+    }
+
+    /***
+     * Записывает значения ячеек в буфер вызывающего кода с его текущей позиции, позиция сдвигается на длину массива
+     * @param destination буфер, в котором осталось места не меньше длины массива
+     * @throws java.nio.BufferOverflowException если места в буфере не хватает
+     */
+    public void copyInto(IntBuffer destination) {
+        if (destination.remaining() < cells.length())
+            throw new BufferOverflowException();
+        for (int i = 0; i < cells.length(); i++)
+            destination.put(cells.value(i, offset));
+    }
+
+    /***
+     * @param index индекс ячейки
+     * @return значение ячейки, без копирования массива
+     */
+    public int getValue(int index) {
+        if (index < 0 || index >= cells.length())
+            throw new IndexOutOfBoundsException("index " + index + ", length " + cells.length());
+        return cells.value(index, offset);
+    }
+
+    /***
+     * @return количество ячеек
+     */
+    public int getLength() {
+        return cells.length();
+    }
+
+    /***
+     * @return ленивый упорядоченный поток состояний траектории, начиная с текущего (см. Trajectory);
+     * этот массив не изменяется
+     */
+    public Stream<TrajectoryStep> trajectory() {
+        return new Trajectory(this).stream();
     }
 
     public List<Integer> asList() {
-        return Arrays.stream(data).boxed().collect(Collectors.toList());
+        return Arrays.stream(getData()).boxed().collect(Collectors.toList());
     }
 
     public Integer[] getDataBoxed() {
-        return IntStream.of(data).boxed().toArray(Integer[]::new);
+        return IntStream.of(getData()).boxed().toArray(Integer[]::new);
     }
 
     public int getMaxValue() {
@@ -132,17 +419,64 @@ public class RedistributiveArray {
         return maxValueIndex;
     }
 
+    /***
+     * @return 64-битный отпечаток текущего состояния массива, совпадает с fingerprintOf(getData())
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /***
+     * Вычисляет 64-битный отпечаток массива: сумму значений ячеек с псевдослучайными весами, зависящими от индекса,
+     * плюс поправку на длину. Отпечаток линеен по значениям ячеек, поэтому при изменении ячейки на delta
+     * меняется на delta * вес ячейки, и его можно поддерживать за O(1) на каждую измененную ячейку.
+     * @param data массив, null воспринимается как пустой массив
+     * @return отпечаток массива
+     */
+    public static long fingerprintOf(int[] data) {
+        if (data == null) data = new int[0];
+        long fingerprint = mix(~(long) data.length);
+        for (int i = 0; i < data.length; i++)
+            fingerprint += data[i] * weight(i);
+        return fingerprint;
+    }
+
+    /***
+     * @return вес ячейки с данным индексом в отпечатке массива
+     */
+    static long weight(int index) {
+        return mix(index + 1L);
+    }
+
+    /***
+     * @return сумма весов ячеек массива данной длины
+     */
+    static long weightSum(int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i++)
+            sum += weight(i);
+        return sum;
+    }
+
+    // финализатор SplitMix64
+    private static long mix(long x) {
+        x *= 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RedistributiveArray that = (RedistributiveArray) o;
-        return Arrays.equals(data, that.data);
+        return fingerprint == that.fingerprint && contentEquals(that);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(data);
+        return Long.hashCode(fingerprint);
     }
 
 }
@@ -1,30 +1,133 @@
 package cycles;
 
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 /***
  * Массив с функцией перераспределения максимального значения по остальным ячейкам.
  * Хранит историю распределений и может быть возвращен к любому предыдущему состоянию (или восстановить его копию).
+ * Для быстрого восстановления периодически сохраняет копии массива (контрольные точки): любое состояние
+ * восстанавливается не более чем за один интервал между контрольными точками.
  * Ищет в истории цикл перераспределения только при вызове соответствующего метода (не ищет после каждой итерации).
  * Регистрирует длину цикла единожды, независимо от откатов.
  */
 public class RedistributiveLoggingArray extends RedistributiveArray {
-    private int[] initialData;
+    // начальный интервал между контрольными точками при автоматическом выборе интервала
+    private static final int INITIAL_CHECKPOINT_INTERVAL = 64;
+
+    // начальные значения, записанные при нулевом смещении
+    private CellStorage initialData;
     private ArrayChangeLog changeLog;
     private boolean isCycleFound;
     private int cyclePeriod;
+    // копии значений массива той же ширины на итерациях, кратных checkpointInterval; нулевая - начальный массив
+    private List<CellStorage> checkpoints;
+    private int checkpointInterval;
+    // удваивать ли интервал по мере роста истории, чтобы хранить порядка sqrt(N) контрольных точек
+    private boolean isCheckpointIntervalAdaptive;
+    // рабочий массив для восстановления прошлых состояний
+    private RedistributiveArray recoveryBuffer;
 
     /***
+     * Создает массив с автоматическим выбором интервала между контрольными точками:
+     * интервал удваивается по мере роста истории и держится порядка корня из количества итераций
      * @param arr null воспринимается как пустой массив
      */
     public RedistributiveLoggingArray(int[] arr) {
+        this(arr, new ArrayChangeLog());
+    }
+
+    /***
+     * Создает массив с автоматическим выбором интервала между контрольными точками и заданным хранилищем истории
+     * @param arr null воспринимается как пустой массив
+     * @param changeLog пустая история, например вне кучи (см. ArrayChangeLog.createMapped)
+     */
+    public RedistributiveLoggingArray(int[] arr, ArrayChangeLog changeLog) {
+        this(arr, INITIAL_CHECKPOINT_INTERVAL, changeLog);
+        isCheckpointIntervalAdaptive = true;
+    }
+
+    /***
+     * @param arr null воспринимается как пустой массив
+     * @param checkpointInterval количество итераций между контрольными точками;
+     *                           для нуля и отрицательных значений контрольные точки не сохраняются
+     */
+    public RedistributiveLoggingArray(int[] arr, int checkpointInterval) {
+        this(arr, checkpointInterval, new ArrayChangeLog());
+    }
+
+    /***
+     * @param arr null воспринимается как пустой массив
+     * @param checkpointInterval количество итераций между контрольными точками;
+     *                           для нуля и отрицательных значений контрольные точки не сохраняются
+     * @param changeLog пустая история, например вне кучи (см. ArrayChangeLog.createMapped)
+     * @throws IllegalArgumentException если история не пустая
+     */
+    public RedistributiveLoggingArray(int[] arr, int checkpointInterval, ArrayChangeLog changeLog) {
         super(arr);
-        initialData = Arrays.copyOf(data, data.length);
-        changeLog = new ArrayChangeLog();
-        changeLog.addEntry(hashCode(), new ArrayChangeLog.LogEntry(maxValue, maxValueIndex));
-        isCycleFound = initialData.length == 0;
+        initHistory(checkpointInterval, changeLog);
+    }
+
+    /***
+     * Создает массив с историей из копии состояния другого массива; копия хранится так же, как исходный массив
+     * (например, вне кучи, см. RedistributiveArray.map)
+     * @param start начальное состояние, null воспринимается как пустой массив
+     * @param checkpointInterval количество итераций между контрольными точками;
+     *                           для нуля и отрицательных значений контрольные точки не сохраняются
+     * @param changeLog пустая история, например вне кучи (см. ArrayChangeLog.createMapped)
+     * @throws IllegalArgumentException если история не пустая
+     */
+    public RedistributiveLoggingArray(RedistributiveArray start, int checkpointInterval, ArrayChangeLog changeLog) {
+        this(start, checkpointInterval, changeLog, null);
+    }
+
+    /***
+     * Создает массив с историей из копии состояния другого массива
+     * @param copyDirectory каталог временных файлов для копий массива вне кучи (см. RedistributiveArray.map);
+     *                      null - тот же, что у начального массива
+     */
+    RedistributiveLoggingArray(RedistributiveArray start, int checkpointInterval, ArrayChangeLog changeLog,
+                               Path copyDirectory) {
+        super(start, copyDirectory);
+        initHistory(checkpointInterval, changeLog);
+    }
+
+    /***
+     * Восстанавливает массив, сохраненный в файле контрольной точки (см. SearchCheckpoint), без контрольных точек
+     * в памяти: прошлые состояния восстанавливаются от начального массива или откатами от текущего
+     * @param initial начальные значения
+     * @param current значения на последней итерации истории
+     * @param changeLog история от начального состояния до текущего, не меньше одной записи
+     */
+    RedistributiveLoggingArray(int[] initial, int[] current, ArrayChangeLog changeLog) {
+        super(current);
+        initialData = CellStorage.forValues(initial);
+        this.changeLog = changeLog;
+        changeLog.setInitialState(initialData);
+        int lastIteration = changeLog.size() - 1;
+        // максимум, по которому пойдет следующее распределение, берется из истории: он не всегда самый левый
+        maxValue = changeLog.getMaxValue(lastIteration);
+        maxValueIndex = changeLog.getMaxValueIndex(lastIteration);
+        isCycleFound = initialData.length() == 0;
         cyclePeriod = (isCycleFound) ? 0 : -1;
+        checkpointInterval = Integer.MAX_VALUE;
+        checkpoints = new ArrayList<>();
+        checkpoints.add(initialData);
+    }
+
+    private void initHistory(int checkpointInterval, ArrayChangeLog changeLog) {
+        if (changeLog.size() != 0)
+            throw new IllegalArgumentException("change log must be empty");
+        initialData = cells.copyValues(offset);
+        this.changeLog = changeLog;
+        changeLog.setInitialState(initialData);
+        changeLog.addEntry(fingerprint, maxValue, maxValueIndex);
+        isCycleFound = initialData.length() == 0;
+        cyclePeriod = (isCycleFound) ? 0 : -1;
+        this.checkpointInterval = (checkpointInterval > 0) ? checkpointInterval : Integer.MAX_VALUE;
+        checkpoints = new ArrayList<>();
+        checkpoints.add(initialData);
     }
 
     public boolean isCycleFound() {
@@ -34,19 +137,25 @@ public class RedistributiveLoggingArray extends RedistributiveArray {
     }
 
     /***
-     * Ищет совпадение текущего массива с одним из его предыдущих состояний (самым недавним, если таких несколько)
+     * Ищет совпадение текущего массива с одним из его предыдущих состояний (самым недавним, если таких несколько).
+     * Кандидаты отбираются по 64-битному отпечатку, поэтому проверка восстановлением почти всегда подтверждает цикл
      */
     private void checkCycle() {
-        ArrayChangeLog.LogEntry lastEntry = changeLog.getLastEntry(); // запись о текущем состоянии
-        List<Integer> sameHashOccurrences = changeLog.getIterationsMatchingHashCode(this.hashCode());
-        for (int i = sameHashOccurrences.size() - 1; i >= 0; i--) { // ищем самое недавнее совпадение
-            int iterationNumber = sameHashOccurrences.get(i);
-            ArrayChangeLog.LogEntry pastEntry = changeLog.getEntry(iterationNumber);
-            if (pastEntry == lastEntry // одна и та же итерация
-                    || !pastEntry.equals(lastEntry)) // не совпадают максимумы
+        int currentIteration = getIterationCount();
+        // обходим итерации с тем же отпечатком от самой недавней к самой ранней
+        for (int iterationNumber = changeLog.getLastIterationMatchingFingerprint(fingerprint);
+             iterationNumber >= 0;
+             iterationNumber = changeLog.getPreviousIterationMatchingFingerprint(iterationNumber)) {
+            if (iterationNumber == currentIteration // одна и та же итерация
+                    || changeLog.getMaxValue(iterationNumber) != maxValue // не совпадают максимумы
+                    || changeLog.getMaxValueIndex(iterationNumber) != maxValueIndex)
                 continue;
-            int[] recoveredArray = recover(iterationNumber);
-            isCycleFound = Arrays.equals(recoveredArray, this.data);
+            isCycleFound = contentEquals(restore(iterationNumber));
+            if (SearchMetrics.ENABLED) {
+                SearchMetrics.CYCLE_VERIFICATIONS.increment();
+                if (!isCycleFound)
+                    SearchMetrics.FALSE_CYCLE_CANDIDATES.increment();
+            }
             if (isCycleFound) {
                 cyclePeriod = getIterationCount() - iterationNumber;
                 break;
@@ -62,23 +171,44 @@ public class RedistributiveLoggingArray extends RedistributiveArray {
      * @return восстановленный массив
      */
     public int[] recover(int iterationNumber) {
-        if (iterationNumber < 0) return Arrays.copyOf(initialData, initialData.length);
-        if (iterationNumber >= getIterationCount()) return getData();
-        return (iterationNumber < getIterationCount() / 2)
-                ? recoverFromInitial(iterationNumber)
-                : recoverFromCurrent(iterationNumber);
+        int[] values = new int[initialData.length()];
+        recoverInto(iterationNumber, values);
+        return values;
+    }
+
+    /***
+     * Записывает массив по состоянию на данную итерацию в массив вызывающего кода; восстановление идет в рабочем
+     * массиве, поэтому при повторных вызовах память не выделяется
+     * @param iterationNumber желаемая итерация,
+     *                        для отрицательных значений запишет начальный массив
+     *                        для слишком больших значений запишет текущий массив
+     * @param destination массив не короче этого
+     * @throws IllegalArgumentException если массив короче
+     */
+    public void recoverInto(int iterationNumber, int[] destination) {
+        if (destination.length < initialData.length())
+            throw new IllegalArgumentException("destination is shorter than the array");
+        if (iterationNumber < 0)
+            initialData.copyValuesInto(0, destination);
+        else if (iterationNumber >= getIterationCount())
+            copyInto(destination);
+        else
+            restore(iterationNumber).copyInto(destination);
     }
 
     @Override
     public void redistributeMaxValue() {
         super.redistributeMaxValue();
-        changeLog.addEntry(hashCode(), new ArrayChangeLog.LogEntry(maxValue, maxValueIndex));
+        changeLog.addEntry(fingerprint, maxValue, maxValueIndex);
+        if (getIterationCount() % checkpointInterval == 0)
+            addCheckpoint();
     }
 
     @Override
     public void rollback(int previousMaxValue, int previousMaxIndex) {
-        changeLog.removeLastEntry(hashCode());
+        changeLog.removeLastEntry(fingerprint);
         super.rollback(previousMaxValue, previousMaxIndex);
+        removeCheckpointsAfterCurrentIteration();
     }
 
     /***
@@ -87,9 +217,10 @@ public class RedistributiveLoggingArray extends RedistributiveArray {
      */
     public void rollback() {
         if (changeLog.size() <= 1) return;
-        changeLog.removeLastEntry(hashCode());
-        ArrayChangeLog.LogEntry entry = changeLog.getLastEntry();
-        super.rollback(entry.getMaxValue(), entry.getMaxValueIndex());
+        changeLog.removeLastEntry(fingerprint);
+        int lastIteration = changeLog.size() - 1;
+        super.rollback(changeLog.getMaxValue(lastIteration), changeLog.getMaxValueIndex(lastIteration));
+        removeCheckpointsAfterCurrentIteration();
     }
 
     /***
@@ -104,32 +235,78 @@ public class RedistributiveLoggingArray extends RedistributiveArray {
     }
 
     /***
-     * Восстанавливает массив к состоянию на данную итерацию из начального массива
-     * @param iterationNumber желаемая итерация
-     * @return восстановленный массив
+     * Восстанавливает в рабочем массиве состояние на данную итерацию: распределениями вперед от ближайшей
+     * предыдущей контрольной точки или откатами от ближайшей следующей контрольной точки либо от текущего массива,
+     * смотря что ближе
+     * @param iterationNumber желаемая итерация, от нуля до текущей
+     * @return рабочий массив в состоянии на данную итерацию
      */
-    private int[] recoverFromCurrent(Integer iterationNumber) {
-        RedistributiveArray base = new RedistributiveArray(this);
+    private RedistributiveArray restore(int iterationNumber) {
+        long startNanos = SearchMetrics.ENABLED ? System.nanoTime() : 0;
+        if (recoveryBuffer == null)
+            recoveryBuffer = new RedistributiveArray(this);
         int iterationCount = getIterationCount();
-        for (int i = iterationCount - 1; i >= iterationNumber; i--) {
-            ArrayChangeLog.LogEntry entryAboutPreviousArray = changeLog.getEntry(i);
-            int previousMaximumValue = entryAboutPreviousArray.getMaxValue();
-            int previousMaximumIndex = entryAboutPreviousArray.getMaxValueIndex();
-            base.rollback(previousMaximumValue, previousMaximumIndex);
+        int previousCheckpoint = Math.min(iterationNumber / checkpointInterval, checkpoints.size() - 1);
+        int previousCheckpointIteration = previousCheckpoint * checkpointInterval;
+        int nextCheckpoint = previousCheckpoint + 1;
+        int nextCheckpointIteration = (nextCheckpoint < checkpoints.size())
+                ? nextCheckpoint * checkpointInterval
+                : iterationCount;
+        if (iterationNumber - previousCheckpointIteration <= nextCheckpointIteration - iterationNumber) {
+            loadCheckpoint(previousCheckpoint, previousCheckpointIteration);
+            for (int i = previousCheckpointIteration; i < iterationNumber; i++)
+                recoveryBuffer.redistributeMaxValue();
+            if (SearchMetrics.ENABLED)
+                SearchMetrics.RECOVERY_STEPS.add(iterationNumber - previousCheckpointIteration);
         }
-        return base.getData();
+        else {
+            if (nextCheckpoint < checkpoints.size())
+                loadCheckpoint(nextCheckpoint, nextCheckpointIteration);
+            else
+                recoveryBuffer.assign(this);
+            for (int i = nextCheckpointIteration - 1; i >= iterationNumber; i--)
+                recoveryBuffer.rollback(changeLog.getMaxValue(i), changeLog.getMaxValueIndex(i));
+            if (SearchMetrics.ENABLED)
+                SearchMetrics.RECOVERY_STEPS.add(nextCheckpointIteration - iterationNumber);
+        }
+        if (SearchMetrics.ENABLED) {
+            SearchMetrics.RECOVERIES.increment();
+            SearchMetrics.RECOVERY_NANOS.add(System.nanoTime() - startNanos);
+        }
+        return recoveryBuffer;
     }
 
     /***
-     * Восстанавливает массив к состоянию на данную итерацию из текущего массива
-     * @param iterationNumber желаемая итерация
-     * @return восстановленный массив
+     * Загружает контрольную точку в рабочий массив вместе с записанными в истории данными о максимуме
+     */
+    private void loadCheckpoint(int checkpoint, int checkpointIteration) {
+        recoveryBuffer.assign(checkpoints.get(checkpoint),
+                changeLog.getMaxValue(checkpointIteration), changeLog.getMaxValueIndex(checkpointIteration));
+    }
+
+    private void addCheckpoint() {
+        checkpoints.add(cells.copyValues(offset));
+        if (isCheckpointIntervalAdaptive && checkpoints.size() > checkpointInterval) {
+            // удваиваем интервал и оставляем только контрольные точки на итерациях, кратных новому интервалу
+            int keptCount = 0;
+            for (int i = 0; i < checkpoints.size(); i += 2)
+                checkpoints.set(keptCount++, checkpoints.get(i));
+            checkpoints.subList(keptCount, checkpoints.size()).clear();
+            checkpointInterval *= 2;
+        }
+    }
+
+    private void removeCheckpointsAfterCurrentIteration() {
+        int keptCount = getIterationCount() / checkpointInterval + 1;
+        if (keptCount < checkpoints.size())
+            checkpoints.subList(keptCount, checkpoints.size()).clear();
+    }
+
+    /***
+     * @return текущий интервал между контрольными точками, Integer.MAX_VALUE если контрольные точки не сохраняются
      */
-    private int[] recoverFromInitial(int iterationNumber) {
-        RedistributiveArray base = new RedistributiveArray(initialData);
-        for (int i = 0; i < iterationNumber; i++)
-            base.redistributeMaxValue();
-        return base.getData();
+    public int getCheckpointInterval() {
+        return checkpointInterval;
     }
 
     /***
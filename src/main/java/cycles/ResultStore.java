@@ -0,0 +1,215 @@
+package cycles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Хранилище результатов поиска циклов на диске, переживающее перезапуск программы: входной массив -> результат.
+ * Файл ограниченного размера целиком отображается в память и состоит из заголовка, индекса и журнала ключей.
+ * Журнал - кольцо, в которое массивы-ключи только дописываются; когда место кончается, запись идет с начала
+ * кольца поверх самых старых ключей, и их результаты перестают находиться (вытеснение в порядке добавления).
+ * Индекс - таблица с ячейками по 32 байта: 64-битный хеш массива, позиция ключа в журнале, длина массива
+ * и результат. Массив ищется в окне из PROBE_LIMIT ячеек от домашней, при переполнении окна занимается ячейка
+ * самого старого ключа. Найденный по хешу ключ сравнивается с массивом целиком, поэтому совпадение хешей
+ * не приводит к неверному результату.
+ * Методы синхронизированы; одновременная работа нескольких процессов с одним файлом не поддерживается.
+ */
+public final class ResultStore implements Closeable {
+    private static final long MAGIC = 0x6379636C65735253L;
+    private static final int VERSION = 1;
+    // заголовок: MAGIC, VERSION, количество ячеек индекса, размер журнала, позиция записи в журнал
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int SLOT_COUNT_OFFSET = 12;
+    private static final int JOURNAL_SIZE_OFFSET = 16;
+    private static final int WRITE_POSITION_OFFSET = 24;
+    // ячейка индекса; нулевой хеш - пустая ячейка
+    private static final int SLOT_SIZE = 32;
+    private static final int SLOT_HASH_OFFSET = 0;
+    private static final int SLOT_POSITION_OFFSET = 8;
+    private static final int SLOT_LENGTH_OFFSET = 16;
+    private static final int SLOT_CYCLE_LENGTH_OFFSET = 20;
+    private static final int SLOT_ITERATIONS_OFFSET = 24;
+    private static final int PROBE_LIMIT = 16;
+    // на сколько байт журнала приходится одна ячейка индекса
+    private static final int JOURNAL_BYTES_PER_SLOT = 64;
+    static final long MIN_SIZE = HEADER_SIZE + (long) PROBE_LIMIT * (SLOT_SIZE + JOURNAL_BYTES_PER_SLOT);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int journalOffset;
+    private final long journalSize;
+    // позиция записи в журнал без учета кольца: ключ на позиции p цел, пока writePosition <= p + journalSize
+    private long writePosition;
+
+    private ResultStore(FileChannel channel, MappedByteBuffer buffer, int slotCount, long journalSize,
+                        long writePosition) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.journalOffset = HEADER_SIZE + slotCount * SLOT_SIZE;
+        this.journalSize = journalSize;
+        this.writePosition = writePosition;
+    }
+
+    /***
+     * Открывает хранилище; если файла нет или он создан с другим размером, создает пустое хранилище
+     * @param file файл хранилища
+     * @param maxBytes размер файла, от MIN_SIZE до Integer.MAX_VALUE байт
+     * @return открытое хранилище
+     * @throws IllegalArgumentException если размер вне допустимых значений
+     * @throws IOException если файл не удалось открыть или отобразить в память
+     */
+    public static ResultStore open(Path file, long maxBytes) throws IOException {
+        if (maxBytes < MIN_SIZE || maxBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maxBytes must be between " + MIN_SIZE + " and "
+                    + Integer.MAX_VALUE + ": " + maxBytes);
+        int slotCount = Integer.highestOneBit((int) ((maxBytes - HEADER_SIZE) / (SLOT_SIZE + JOURNAL_BYTES_PER_SLOT)));
+        long journalSize = maxBytes - HEADER_SIZE - (long) slotCount * SLOT_SIZE;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean compatible = channel.size() == maxBytes;
+            if (!compatible)
+                channel.truncate(0); // отображение дополнит файл нулями до нужного размера
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxBytes);
+            if (!compatible || buffer.getLong(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION
+                    || buffer.getInt(SLOT_COUNT_OFFSET) != slotCount
+                    || buffer.getLong(JOURNAL_SIZE_OFFSET) != journalSize) {
+                for (int i = 0; i < HEADER_SIZE + slotCount * SLOT_SIZE; i += 8)
+                    buffer.putLong(i, 0);
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+                buffer.putLong(JOURNAL_SIZE_OFFSET, journalSize);
+                buffer.putLong(MAGIC_OFFSET, MAGIC);
+            }
+            return new ResultStore(channel, buffer, slotCount, journalSize, buffer.getLong(WRITE_POSITION_OFFSET));
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /***
+     * @param arr непустой массив
+     * @return сохраненный результат для массива, null если его нет
+     */
+    public synchronized CycleSearchResult get(int[] arr) {
+        long hash = hashOf(arr);
+        int home = (int) hash & (slotCount - 1);
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = slotPosition((home + probe) & (slotCount - 1));
+            if (buffer.getLong(slot + SLOT_HASH_OFFSET) == hash && keyEquals(slot, arr))
+                return new CycleSearchResult(buffer.getInt(slot + SLOT_CYCLE_LENGTH_OFFSET),
+                        buffer.getInt(slot + SLOT_ITERATIONS_OFFSET));
+        }
+        return null;
+    }
+
+    /***
+     * Сохраняет результат для массива. Массив, ключ которого не помещается в журнал, не сохраняется
+     * @param arr непустой массив
+     * @param result результат поиска для массива
+     */
+    public synchronized void put(int[] arr, CycleSearchResult result) {
+        long keySize = 4L * arr.length;
+        if (keySize > journalSize)
+            return;
+        long hash = hashOf(arr);
+        int home = (int) hash & (slotCount - 1);
+        int target = -1;
+        long oldestPosition = Long.MAX_VALUE;
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = slotPosition((home + probe) & (slotCount - 1));
+            if (buffer.getLong(slot + SLOT_HASH_OFFSET) == hash && keyEquals(slot, arr)) {
+                writeResult(slot, result);
+                return;
+            }
+            long position = isLive(slot) ? buffer.getLong(slot + SLOT_POSITION_OFFSET) : -1;
+            if (position < oldestPosition) {
+                oldestPosition = position;
+                target = slot;
+            }
+        }
+        // ключ не пересекает конец кольца: если не помещается до конца, пишется с начала
+        long ringOffset = writePosition % journalSize;
+        if (ringOffset + keySize > journalSize)
+            writePosition += journalSize - ringOffset;
+        long position = writePosition;
+        for (int i = 0; i < arr.length; i++)
+            buffer.putInt(journalPosition(position) + 4 * i, arr[i]);
+        writePosition += keySize;
+        // хеш записывается последним: ячейка с хешем всегда указывает на записанный ключ
+        buffer.putLong(target + SLOT_HASH_OFFSET, 0);
+        buffer.putLong(target + SLOT_POSITION_OFFSET, position);
+        buffer.putInt(target + SLOT_LENGTH_OFFSET, arr.length);
+        writeResult(target, result);
+        buffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+        buffer.putLong(target + SLOT_HASH_OFFSET, hash);
+    }
+
+    /***
+     * Сбрасывает отображенные данные на диск и закрывает файл
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void writeResult(int slot, CycleSearchResult result) {
+        buffer.putInt(slot + SLOT_CYCLE_LENGTH_OFFSET, result.getCycleLength());
+        buffer.putInt(slot + SLOT_ITERATIONS_OFFSET, result.getIterationsRequired());
+    }
+
+    /***
+     * @return true, если ячейка занята и ее ключ еще не перезаписан в журнале
+     */
+    private boolean isLive(int slot) {
+        return buffer.getLong(slot + SLOT_HASH_OFFSET) != 0
+                && writePosition <= buffer.getLong(slot + SLOT_POSITION_OFFSET) + journalSize;
+    }
+
+    private boolean keyEquals(int slot, int[] arr) {
+        if (!isLive(slot) || buffer.getInt(slot + SLOT_LENGTH_OFFSET) != arr.length)
+            return false;
+        int key = journalPosition(buffer.getLong(slot + SLOT_POSITION_OFFSET));
+        for (int i = 0; i < arr.length; i++) {
+            if (buffer.getInt(key + 4 * i) != arr[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private int journalPosition(long position) {
+        return journalOffset + (int) (position % journalSize);
+    }
+
+    /***
+     * @return перемешивающий 64-битный хеш массива, не равный нулю
+     */
+    static long hashOf(int[] arr) {
+        long hash = mix(~(long) arr.length);
+        for (int value : arr)
+            hash = mix(hash + value);
+        return hash != 0 ? hash : 1;
+    }
+
+    // финализатор SplitMix64
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+}
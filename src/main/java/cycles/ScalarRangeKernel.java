@@ -0,0 +1,44 @@
+package cycles;
+
+/***
+ * Скалярная реализация ядра: обычные циклы по ячейкам
+ */
+final class ScalarRangeKernel extends RangeKernel {
+
+    @Override
+    long addToRange(int[] data, int from, int to, int value) {
+        long rangeWeight = 0;
+        for (int i = from; i < to; i++) {
+            data[i] += value;
+            rangeWeight += RedistributiveArray.weight(i);
+        }
+        return rangeWeight;
+    }
+
+    @Override
+    long weightSum(int from, int to) {
+        long rangeWeight = 0;
+        for (int i = from; i < to; i++)
+            rangeWeight += RedistributiveArray.weight(i);
+        return rangeWeight;
+    }
+
+    @Override
+    int leftmostMaxIndex(int[] data, int offset, int from, int to) {
+        int max = data[from] + offset;
+        int maxIndex = from;
+        for (int i = from + 1; i < to; i++) {
+            int value = data[i] + offset;
+            if (value > max) {
+                max = value;
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    @Override
+    String name() {
+        return "scalar";
+    }
+}
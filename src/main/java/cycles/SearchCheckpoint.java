@@ -0,0 +1,213 @@
+package cycles;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/***
+ * Файл контрольных точек поиска с историей (RedistributiveLoggingArray), позволяющий продолжить поиск после
+ * перезапуска программы. Файл только дописывается: заголовок с начальными значениями массива, затем блоки,
+ * в каждом - записи истории, добавленные после предыдущего блока (отпечаток, максимум, индекс максимума),
+ * и значения массива на последней из них. Номер итерации - количество записей истории без начальной.
+ * Заголовок и блоки заканчиваются контрольной суммой CRC32; недописанный или испорченный хвост файла при открытии
+ * отбрасывается, и поиск продолжается с последнего целого блока. Все числа в порядке big-endian.
+ * Запись не сбрасывается на диск принудительно: данные переживают перезапуск JVM, но не сбой системы.
+ */
+final class SearchCheckpoint implements Closeable {
+    private static final long MAGIC = 0x6379636C65734350L;
+    private static final int VERSION = 1;
+    // отпечаток, максимум, индекс максимума
+    private static final int ENTRY_BYTES = 16;
+
+    // поток, а не FileChannel: запись в канал прерванным потоком закрыла бы канал
+    private final FileOutputStream output;
+    private final RedistributiveLoggingArray array;
+    // количество записей истории, уже записанных в файл
+    private int writtenEntries;
+    private ByteBuffer block = ByteBuffer.allocate(0);
+    private final int[] values;
+    private final CRC32 crc = new CRC32();
+
+    private SearchCheckpoint(FileOutputStream output, RedistributiveLoggingArray array, int writtenEntries) {
+        this.output = output;
+        this.array = array;
+        this.writtenEntries = writtenEntries;
+        this.values = new int[array.getLength()];
+    }
+
+    /***
+     * Открывает файл контрольных точек для массива: если файл есть и начат с тех же начальных значений,
+     * восстанавливает массив по последнему целому блоку, иначе начинает файл заново
+     * @param file файл контрольных точек
+     * @param arr непустой начальный массив
+     * @return открытый файл с массивом в восстановленном или начальном состоянии
+     */
+    static SearchCheckpoint open(Path file, int[] arr) throws IOException {
+        if (Files.exists(file)) {
+            SearchCheckpoint resumed = resume(file, arr);
+            if (resumed != null)
+                return resumed;
+        }
+        FileOutputStream output = new FileOutputStream(file.toFile());
+        try {
+            SearchCheckpoint checkpoint = new SearchCheckpoint(output, new RedistributiveLoggingArray(arr, 0), 0);
+            checkpoint.writeHeader(arr);
+            checkpoint.append();
+            return checkpoint;
+        }
+        catch (IOException | RuntimeException e) {
+            output.close();
+            throw e;
+        }
+    }
+
+    /***
+     * @return массив поиска
+     */
+    RedistributiveLoggingArray getArray() {
+        return array;
+    }
+
+    /***
+     * Дописывает блок с записями истории, добавленными после предыдущего блока, и текущими значениями массива
+     */
+    void append() throws IOException {
+        ArrayChangeLog changeLog = array.getChangeLog();
+        int entryCount = changeLog.size() - writtenEntries;
+        int size = 4 + entryCount * ENTRY_BYTES + 4 * values.length + 4;
+        if (block.capacity() < size)
+            block = ByteBuffer.allocate(Math.max(size, 2 * block.capacity()));
+        block.clear();
+        block.putInt(entryCount);
+        for (int i = writtenEntries; i < changeLog.size(); i++) {
+            block.putLong(changeLog.getFingerprint(i));
+            block.putInt(changeLog.getMaxValue(i));
+            block.putInt(changeLog.getMaxValueIndex(i));
+        }
+        array.copyInto(values);
+        for (int value : values)
+            block.putInt(value);
+        writeWithChecksum();
+        writtenEntries = changeLog.size();
+    }
+
+    private void writeHeader(int[] arr) throws IOException {
+        int size = 8 + 4 + 4 + 4 * arr.length + 4;
+        block = ByteBuffer.allocate(size);
+        block.putLong(MAGIC);
+        block.putInt(VERSION);
+        block.putInt(arr.length);
+        for (int value : arr)
+            block.putInt(value);
+        writeWithChecksum();
+    }
+
+    private void writeWithChecksum() throws IOException {
+        crc.reset();
+        crc.update(block.array(), 0, block.position());
+        block.putInt((int) crc.getValue());
+        output.write(block.array(), 0, block.position());
+    }
+
+    /***
+     * Читает файл до последнего целого блока и обрезает остаток
+     * @return открытый файл с восстановленным массивом; null, если заголовок поврежден или массив другой
+     */
+    private static SearchCheckpoint resume(Path file, int[] arr) throws IOException {
+        long fileLength = Files.size(file);
+        long validLength;
+        int[] current = null;
+        ArrayChangeLog changeLog = new ArrayChangeLog();
+        CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)),
+                new CRC32());
+        try (DataInputStream input = new DataInputStream(checked)) {
+            try {
+                if (input.readLong() != MAGIC || input.readInt() != VERSION || input.readInt() != arr.length)
+                    return null;
+                for (int value : arr) {
+                    if (input.readInt() != value)
+                        return null;
+                }
+                if (!checksumMatches(checked, input))
+                    return null;
+            }
+            catch (EOFException e) {
+                return null;
+            }
+            validLength = 8 + 4 + 4 + 4L * arr.length + 4;
+            long[] fingerprints = new long[0];
+            long[] maxima = new long[0];
+            int[] values = new int[arr.length];
+            while (true) {
+                // блок применяется к истории только целиком и с верной контрольной суммой
+                try {
+                    int entryCount = input.readInt();
+                    if (entryCount < 0 || (long) entryCount * ENTRY_BYTES > fileLength - validLength)
+                        break; // испорченная длина блока
+                    if (fingerprints.length < entryCount) {
+                        fingerprints = new long[entryCount];
+                        maxima = new long[entryCount];
+                    }
+                    for (int i = 0; i < entryCount; i++) {
+                        fingerprints[i] = input.readLong();
+                        maxima[i] = input.readLong();
+                    }
+                    for (int i = 0; i < values.length; i++)
+                        values[i] = input.readInt();
+                    if (!checksumMatches(checked, input))
+                        break;
+                    for (int i = 0; i < entryCount; i++)
+                        changeLog.addEntry(fingerprints[i], (int) (maxima[i] >> 32), (int) maxima[i]);
+                    if (current == null)
+                        current = new int[values.length];
+                    System.arraycopy(values, 0, current, 0, values.length);
+                    validLength += 4 + (long) entryCount * ENTRY_BYTES + 4L * values.length + 4;
+                }
+                catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        if (current == null || changeLog.size() == 0)
+            return null;
+        try (RandomAccessFile truncated = new RandomAccessFile(file.toFile(), "rw")) {
+            truncated.setLength(validLength);
+        }
+        RedistributiveLoggingArray array = new RedistributiveLoggingArray(arr, current, changeLog);
+        return new SearchCheckpoint(new FileOutputStream(file.toFile(), true), array, changeLog.size());
+    }
+
+    /***
+     * Читает контрольную сумму блока и сравнивает с посчитанной по прочитанным байтам; сумма следующего блока
+     * считается заново
+     */
+    private static boolean checksumMatches(CheckedInputStream checked, DataInputStream input) throws IOException {
+        int expected = (int) checked.getChecksum().getValue();
+        int actual = input.readInt();
+        checked.getChecksum().reset();
+        return expected == actual;
+    }
+
+    @Override
+    public void close() throws IOException {
+        array.getChangeLog().release();
+        output.close();
+    }
+
+    /***
+     * Закрывает и удаляет файл, когда поиск закончен
+     */
+    void delete(Path file) throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,20 @@
+package cycles;
+
+/***
+ * Способ поиска цикла перераспределения (см. DistributionCycles)
+ */
+public enum SearchEngine {
+    /***
+     * карта снимок состояния -> итерация (ArraySnapshot со структурным разделением, сравнение по содержимому):
+     * быстро, но на каждый шаг копируются пути к измененным листьям снимка (см. SearchPlan)
+     */
+    TIME_EFFICIENT,
+    /***
+     * история максимумов в ArrayChangeLog с восстановлением состояний: меньше памяти на итерацию, медленнее
+     */
+    MEMORY_EFFICIENT,
+    /***
+     * алгоритм Брента без истории: память не зависит от количества итераций, шагов больше
+     */
+    BRENT
+}
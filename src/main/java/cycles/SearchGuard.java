@@ -0,0 +1,113 @@
+package cycles;
+
+/***
+ * Проверка ограничений одного поиска (см. SearchLimits). Поиск вызывает beforeStep перед каждым шагом
+ * перераспределения; на большинстве шагов это увеличение счетчика и одно сравнение, а ограничения целиком
+ * проверяются раз в checkInterval шагов. Интервал подобран по длине массива так, чтобы между проверками
+ * делалось около миллиона операций над ячейками: на коротких массивах System.nanoTime не вызывается на каждом
+ * шаге, на длинных отмена замечается после одного шага. Превышение ограничения прерывает поиск исключением
+ * Stop, которое ловит точка входа поиска.
+ */
+final class SearchGuard {
+    private static final int CELL_OPERATIONS_PER_CHECK = 1 << 20;
+    private static final int MAX_CHECK_INTERVAL = 1024;
+
+    private final long iterationLimit;
+    private final boolean hasDeadline;
+    private final long deadlineNanos;
+    private final CancellationToken cancellation;
+    private final SearchProgressListener progressListener;
+    private final long progressIntervalNanos;
+    private final int checkInterval;
+    private long nextProgressNanos;
+    private long steps;
+    // номер шага, перед которым ограничения проверяются в следующий раз
+    private long nextCheck;
+
+    private SearchGuard(SearchLimits limits, int length) {
+        long startNanos = System.nanoTime();
+        Long deadline = limits.deadlineFor(startNanos);
+        iterationLimit = limits.getIterationLimit();
+        hasDeadline = deadline != null;
+        deadlineNanos = hasDeadline ? deadline : 0;
+        cancellation = limits.getCancellation();
+        progressListener = limits.getProgressListener();
+        progressIntervalNanos = limits.getProgressIntervalNanos();
+        nextProgressNanos = startNanos + progressIntervalNanos;
+        checkInterval = Math.max(1, Math.min(MAX_CHECK_INTERVAL, CELL_OPERATIONS_PER_CHECK / length));
+        // отмену и истекший срок замечаем до первого шага
+        nextCheck = hasDeadline || cancellation != null ? 0 : Math.min(iterationLimit, checkInterval);
+    }
+
+    /***
+     * @param limits ограничения поиска
+     * @param length длина массива
+     */
+    static SearchGuard of(SearchLimits limits, int length) {
+        return new SearchGuard(limits, length);
+    }
+
+    /***
+     * @return проверка без ограничений для поисков, которые идут до нахождения цикла
+     */
+    static SearchGuard unlimited() {
+        return new SearchGuard(SearchLimits.none(), 1);
+    }
+
+    /***
+     * Вызывается перед каждым шагом перераспределения
+     * @param current массив, отпечаток которого попадет в сведения о ходе поиска и в Stop
+     * @throws Stop если поиск надо остановить
+     */
+    void beforeStep(RedistributiveArray current) {
+        if (steps >= nextCheck)
+            check(current);
+        ++steps;
+    }
+
+    /***
+     * @return количество сделанных шагов
+     */
+    long getSteps() {
+        return steps;
+    }
+
+    private void check(RedistributiveArray current) {
+        if (steps >= iterationLimit)
+            throw new Stop(LimitedSearchResult.StopReason.ITERATION_LIMIT, steps, current.getFingerprint());
+        if (cancellation != null && cancellation.isCancelled())
+            throw new Stop(LimitedSearchResult.StopReason.CANCELLED, steps, current.getFingerprint());
+        if (hasDeadline || progressListener != null) {
+            long now = System.nanoTime();
+            if (hasDeadline && now - deadlineNanos >= 0)
+                throw new Stop(LimitedSearchResult.StopReason.DEADLINE, steps, current.getFingerprint());
+            if (progressListener != null && now - nextProgressNanos >= 0) {
+                progressListener.progress(steps, current.getFingerprint());
+                nextProgressNanos = now + progressIntervalNanos;
+            }
+        }
+        nextCheck = Math.min(iterationLimit, steps + checkInterval);
+    }
+
+    /***
+     * Остановка поиска по ограничению; без стека вызовов, так как служит только для выхода из поиска
+     */
+    static final class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final LimitedSearchResult.StopReason reason;
+        private final long steps;
+        private final long fingerprint;
+
+        Stop(LimitedSearchResult.StopReason reason, long steps, long fingerprint) {
+            super(reason.name(), null, false, false);
+            this.reason = reason;
+            this.steps = steps;
+            this.fingerprint = fingerprint;
+        }
+
+        LimitedSearchResult toResult() {
+            return new LimitedSearchResult(reason, null, steps, fingerprint);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package cycles;
+
+import java.time.Duration;
+
+/***
+ * Ограничения поиска цикла (см. DistributionCycles.evaluateRedistributionOfMaxValueCycle(int[], SearchLimits)):
+ * количество шагов, время, отмена извне, а также получатель сведений о ходе поиска.
+ * Неизменяемый: каждый метод with* возвращает новые ограничения.
+ */
+public final class SearchLimits {
+    private static final SearchLimits NONE = new SearchLimits(Long.MAX_VALUE, null, -1, null, null, 0);
+
+    private final long iterationLimit;
+    // абсолютный срок по System.nanoTime, если задан
+    private final Long deadlineNanos;
+    // срок от начала каждого поиска, -1 если не задан
+    private final long timeoutNanos;
+    private final CancellationToken cancellation;
+    private final SearchProgressListener progressListener;
+    private final long progressIntervalNanos;
+
+    private SearchLimits(long iterationLimit, Long deadlineNanos, long timeoutNanos, CancellationToken cancellation,
+                         SearchProgressListener progressListener, long progressIntervalNanos) {
+        this.iterationLimit = iterationLimit;
+        this.deadlineNanos = deadlineNanos;
+        this.timeoutNanos = timeoutNanos;
+        this.cancellation = cancellation;
+        this.progressListener = progressListener;
+        this.progressIntervalNanos = progressIntervalNanos;
+    }
+
+    /***
+     * @return ограничения, при которых поиск идет до нахождения цикла
+     */
+    public static SearchLimits none() {
+        return NONE;
+    }
+
+    /***
+     * @param iterationLimit наибольшее количество шагов поиска, положительное; способы поиска без истории
+     *                       делают больше шагов, чем итераций до цикла
+     * @throws IllegalArgumentException если количество не положительно
+     */
+    public SearchLimits withIterationLimit(long iterationLimit) {
+        if (iterationLimit <= 0)
+            throw new IllegalArgumentException("iterationLimit must be positive: " + iterationLimit);
+        return new SearchLimits(iterationLimit, deadlineNanos, timeoutNanos, cancellation, progressListener,
+                progressIntervalNanos);
+    }
+
+    /***
+     * @param deadlineNanos срок окончания поиска по System.nanoTime, общий для всех поисков с этими ограничениями
+     */
+    public SearchLimits withDeadline(long deadlineNanos) {
+        return new SearchLimits(iterationLimit, deadlineNanos, timeoutNanos, cancellation, progressListener,
+                progressIntervalNanos);
+    }
+
+    /***
+     * @param timeout наибольшая продолжительность каждого поиска с этими ограничениями
+     */
+    public SearchLimits withTimeout(Duration timeout) {
+        return new SearchLimits(iterationLimit, deadlineNanos, Math.max(0, timeout.toNanos()), cancellation,
+                progressListener, progressIntervalNanos);
+    }
+
+    public SearchLimits withCancellation(CancellationToken cancellation) {
+        return new SearchLimits(iterationLimit, deadlineNanos, timeoutNanos, cancellation, progressListener,
+                progressIntervalNanos);
+    }
+
+    /***
+     * @param listener получатель сведений о ходе поиска
+     * @param interval наименьший интервал между вызовами получателя
+     */
+    public SearchLimits withProgress(SearchProgressListener listener, Duration interval) {
+        return new SearchLimits(iterationLimit, deadlineNanos, timeoutNanos, cancellation, listener,
+                Math.max(0, interval.toNanos()));
+    }
+
+    long getIterationLimit() {
+        return iterationLimit;
+    }
+
+    /***
+     * @param startNanos время начала поиска по System.nanoTime
+     * @return ближайший из сроков для поиска, начатого в startNanos; null если сроков нет
+     */
+    Long deadlineFor(long startNanos) {
+        if (timeoutNanos < 0)
+            return deadlineNanos;
+        long timeoutDeadline = startNanos + timeoutNanos;
+        return deadlineNanos == null || timeoutDeadline - deadlineNanos < 0 ? timeoutDeadline : deadlineNanos;
+    }
+
+    CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    SearchProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    long getProgressIntervalNanos() {
+        return progressIntervalNanos;
+    }
+}
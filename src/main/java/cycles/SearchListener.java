@@ -0,0 +1,26 @@
+package cycles;
+
+/***
+ * Получатель событий поиска циклов (см. SearchMetrics.addListener). События приходят по одному на поиск,
+ * а не на шаг перераспределения, из того потока, который ведет поиск.
+ */
+public interface SearchListener {
+
+    /***
+     * Поиск начат
+     * @param engine способ поиска: имя SearchEngine для поиска по плану или имя отдельного способа
+     *               ("PIPELINED", "DISTINGUISHED_POINTS", "OFF_HEAP", "RESUMABLE")
+     * @param length длина массива
+     */
+    default void searchStarted(String engine, int length) {
+    }
+
+    /***
+     * Поиск закончен; для поиска, остановленного ограничениями (см. SearchLimits), не вызывается
+     * @param engine способ поиска, как в searchStarted
+     * @param result результат поиска
+     * @param elapsedNanos продолжительность поиска в наносекундах
+     */
+    default void searchFinished(String engine, CycleSearchResult result, long elapsedNanos) {
+    }
+}
@@ -0,0 +1,275 @@
+package cycles;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Счетчики и события поиска циклов: шаги и откаты перераспределения, проверки кандидатов в цикл и ложные
+ * совпадения отпечатков, восстановления прошлых состояний и их стоимость, размер истории ArrayChangeLog,
+ * количество и время поисков. Счетчики общие для всех поисков и потоков.
+ * Включается системным свойством cycles.metrics=true при запуске. Флаг ENABLED - константа, и в выключенном
+ * состоянии JIT-компилятор выбрасывает проверки вместе со счетчиками из горячих циклов целиком.
+ */
+public final class SearchMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("cycles.metrics");
+    private static final String MBEAN_NAME = "cycles:type=SearchMetrics";
+
+    static final LongAdder SEARCHES = new LongAdder();
+    static final LongAdder SEARCH_NANOS = new LongAdder();
+    static final LongAdder STEPS = new LongAdder();
+    static final LongAdder ROLLBACKS = new LongAdder();
+    // сравнения состояний целиком для кандидатов в цикл с совпавшим отпечатком
+    static final LongAdder CYCLE_VERIFICATIONS = new LongAdder();
+    static final LongAdder FALSE_CYCLE_CANDIDATES = new LongAdder();
+    static final LongAdder RECOVERIES = new LongAdder();
+    // шаги вперед и откаты, сделанные при восстановлении
+    static final LongAdder RECOVERY_STEPS = new LongAdder();
+    static final LongAdder RECOVERY_NANOS = new LongAdder();
+    // записи историй, которые еще используются: добавленные за вычетом удаленных откатами и выброшенных вместе
+    // с историей по окончании поиска или при закрытии
+    static final LongAdder HISTORY_ENTRIES = new LongAdder();
+
+    private static final List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+
+    private SearchMetrics() {
+    }
+
+    /***
+     * Неизменяемый снимок счетчиков
+     */
+    public static final class Snapshot {
+        private final long timestampNanos;
+        private final long searches, searchNanos;
+        private final long steps, rollbacks;
+        private final long cycleVerifications, falseCycleCandidates;
+        private final long recoveries, recoverySteps, recoveryNanos;
+        private final long historyEntries;
+
+        private Snapshot() {
+            timestampNanos = System.nanoTime();
+            searches = SEARCHES.sum();
+            searchNanos = SEARCH_NANOS.sum();
+            steps = STEPS.sum();
+            rollbacks = ROLLBACKS.sum();
+            cycleVerifications = CYCLE_VERIFICATIONS.sum();
+            falseCycleCandidates = FALSE_CYCLE_CANDIDATES.sum();
+            recoveries = RECOVERIES.sum();
+            recoverySteps = RECOVERY_STEPS.sum();
+            recoveryNanos = RECOVERY_NANOS.sum();
+            historyEntries = HISTORY_ENTRIES.sum();
+        }
+
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        /***
+         * @return количество законченных поисков
+         */
+        public long getSearches() {
+            return searches;
+        }
+
+        /***
+         * @return суммарное время законченных поисков в наносекундах
+         */
+        public long getSearchNanos() {
+            return searchNanos;
+        }
+
+        /***
+         * @return количество шагов перераспределения, включая шаги копий массива и восстановлений
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        public long getRollbacks() {
+            return rollbacks;
+        }
+
+        /***
+         * @return количество сравнений состояний целиком для кандидатов в цикл
+         */
+        public long getCycleVerifications() {
+            return cycleVerifications;
+        }
+
+        /***
+         * @return количество кандидатов в цикл, состояние которых не совпало с текущим (коллизий отпечатков)
+         */
+        public long getFalseCycleCandidates() {
+            return falseCycleCandidates;
+        }
+
+        /***
+         * @return количество восстановлений прошлых состояний RedistributiveLoggingArray
+         */
+        public long getRecoveries() {
+            return recoveries;
+        }
+
+        /***
+         * @return шаги вперед и откаты, сделанные при восстановлениях
+         */
+        public long getRecoverySteps() {
+            return recoverySteps;
+        }
+
+        public long getRecoveryNanos() {
+            return recoveryNanos;
+        }
+
+        /***
+         * @return количество записей в историях ArrayChangeLog, которые еще используются: добавленные за вычетом
+         * удаленных откатами и выброшенных по окончании поиска или закрытием истории (ArrayChangeLog.close);
+         * истории, созданные вызывающим кодом и не закрытые, учитываются, пока не закрыты
+         */
+        public long getHistoryEntries() {
+            return historyEntries;
+        }
+
+        /***
+         * @return оценка памяти под записи getHistoryEntries в байтах (см. ArrayChangeLog.getMemoryBytes)
+         */
+        public long getHistoryBytes() {
+            return historyEntries * ArrayChangeLog.BYTES_PER_ENTRY;
+        }
+
+        /***
+         * @param earlier более ранний снимок
+         * @return шагов перераспределения в секунду между снимками
+         */
+        public double stepsPerSecond(Snapshot earlier) {
+            long nanos = timestampNanos - earlier.timestampNanos;
+            return nanos > 0 ? (steps - earlier.steps) * 1e9 / nanos : 0;
+        }
+    }
+
+    /***
+     * @return снимок текущих значений счетчиков; при выключенных метриках все значения нулевые
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /***
+     * Подписывает получателя на события поисков; при выключенных метриках события не приходят
+     */
+    public static void addListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(SearchListener listener) {
+        listeners.remove(listener);
+    }
+
+    /***
+     * Регистрирует счетчики в платформенном MBeanServer под именем cycles:type=SearchMetrics;
+     * повторная регистрация ничего не делает
+     * @throws IllegalStateException если регистрация не удалась
+     */
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(MBEAN_NAME));
+        }
+        catch (InstanceAlreadyExistsException e) {
+            // уже зарегистрирован
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("cannot register " + MBEAN_NAME, e);
+        }
+    }
+
+    /***
+     * Сообщает о начале поиска, вызывается под проверкой ENABLED
+     * @return время начала поиска для searchFinished
+     */
+    static long searchStarted(String engine, int length) {
+        for (SearchListener listener : listeners)
+            listener.searchStarted(engine, length);
+        return System.nanoTime();
+    }
+
+    /***
+     * Сообщает об окончании поиска, вызывается под проверкой ENABLED
+     * @param startNanos значение, которое вернул searchStarted
+     */
+    static void searchFinished(String engine, CycleSearchResult result, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        SEARCHES.increment();
+        SEARCH_NANOS.add(elapsedNanos);
+        for (SearchListener listener : listeners)
+            listener.searchFinished(engine, result, elapsedNanos);
+    }
+
+    /***
+     * Счетчики для JMX: каждое чтение берет текущие значения
+     */
+    private static final class Bean implements SearchMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public long getSearches() {
+            return SEARCHES.sum();
+        }
+
+        @Override
+        public long getSearchNanos() {
+            return SEARCH_NANOS.sum();
+        }
+
+        @Override
+        public long getSteps() {
+            return STEPS.sum();
+        }
+
+        @Override
+        public long getRollbacks() {
+            return ROLLBACKS.sum();
+        }
+
+        @Override
+        public long getCycleVerifications() {
+            return CYCLE_VERIFICATIONS.sum();
+        }
+
+        @Override
+        public long getFalseCycleCandidates() {
+            return FALSE_CYCLE_CANDIDATES.sum();
+        }
+
+        @Override
+        public long getRecoveries() {
+            return RECOVERIES.sum();
+        }
+
+        @Override
+        public long getRecoverySteps() {
+            return RECOVERY_STEPS.sum();
+        }
+
+        @Override
+        public long getRecoveryNanos() {
+            return RECOVERY_NANOS.sum();
+        }
+
+        @Override
+        public long getHistoryEntries() {
+            return HISTORY_ENTRIES.sum();
+        }
+
+        @Override
+        public long getHistoryBytes() {
+            return HISTORY_ENTRIES.sum() * ArrayChangeLog.BYTES_PER_ENTRY;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package cycles;
+
+/***
+ * Счетчики поиска циклов для JMX (см. SearchMetrics.registerMBean); значения - накопленные с запуска программы
+ */
+public interface SearchMetricsMXBean {
+
+    boolean isEnabled();
+
+    long getSearches();
+
+    long getSearchNanos();
+
+    long getSteps();
+
+    long getRollbacks();
+
+    long getCycleVerifications();
+
+    long getFalseCycleCandidates();
+
+    long getRecoveries();
+
+    long getRecoverySteps();
+
+    long getRecoveryNanos();
+
+    long getHistoryEntries();
+
+    long getHistoryBytes();
+}
@@ -0,0 +1,131 @@
+package cycles;
+
+/***
+ * План поиска цикла: какой способ поиска использовать с учетом доступной памяти и когда переключиться
+ * на поиск без истории, если история перестанет помещаться в память.
+ * Расход памяти оценивается по длине массива и сумме его значений: для неотрицательных значений количество
+ * различных состояний массива, а значит и итераций до цикла, не больше числа разбиений суммы на n слагаемых.
+ */
+public class SearchPlan {
+    // оценка памяти на одну итерацию без снимка состояния: узел HashMap, Integer и доля таблицы
+    static final long TIME_EFFICIENT_BYTES_PER_ITERATION = 64;
+    // оценка памяти на одну итерацию: запись ArrayChangeLog и доля хеш-таблицы
+    static final long MEMORY_EFFICIENT_BYTES_PER_ITERATION = 48;
+    // меньше этого количества итераций историю заводить нет смысла, сразу ищем без истории
+    static final int MIN_HISTORY_ITERATIONS = 1024;
+    // доля свободной памяти кучи, которую можно отдать под поиск по умолчанию
+    private static final int DEFAULT_BUDGET_PERCENT = 50;
+
+    private final SearchEngine engine;
+    private final int historyIterationLimit;
+    private final long memoryBudget;
+    private final long stateCountBound;
+
+    private SearchPlan(SearchEngine engine, int historyIterationLimit, long memoryBudget, long stateCountBound) {
+        this.engine = engine;
+        this.historyIterationLimit = historyIterationLimit;
+        this.memoryBudget = memoryBudget;
+        this.stateCountBound = stateCountBound;
+    }
+
+    /***
+     * Составляет план поиска: если история всех возможных состояний помещается в бюджет, выбирает способ
+     * с историей (самый быстрый из помещающихся), иначе - быстрый способ с переключением на алгоритм Брента
+     * после исчерпания бюджета, или сразу алгоритм Брента, если бюджета не хватает даже на короткую историю
+     * @param arr непустой массив
+     * @param memoryBudget допустимый расход памяти в байтах
+     * @return план поиска
+     */
+    public static SearchPlan create(int[] arr, long memoryBudget) {
+        long stateCountBound = stateCountBound(arr);
+        int cellBytes = CellStorage.cellBytes(arr);
+        long arrayBytes = estimateArrayBytes(arr.length, cellBytes);
+        long historyBudget = memoryBudget - arrayBytes;
+        long timeEfficientBytes = TIME_EFFICIENT_BYTES_PER_ITERATION + ArraySnapshot.estimateBytesPerStep(arr.length, cellBytes);
+        if (stateCountBound <= historyBudget / timeEfficientBytes)
+            return new SearchPlan(SearchEngine.TIME_EFFICIENT, Integer.MAX_VALUE, memoryBudget, stateCountBound);
+        // контрольные точки при автоматическом интервале: порядка sqrt(N) копий массива
+        long checkpointBytes = (long) Math.sqrt((double) stateCountBound) * cellBytes * arr.length;
+        if (stateCountBound <= (historyBudget - checkpointBytes) / MEMORY_EFFICIENT_BYTES_PER_ITERATION)
+            return new SearchPlan(SearchEngine.MEMORY_EFFICIENT, Integer.MAX_VALUE, memoryBudget, stateCountBound);
+        // после переключения нужны еще две копии массива для алгоритма Брента
+        long limit = (historyBudget - 2 * arrayBytes) / timeEfficientBytes;
+        if (limit < MIN_HISTORY_ITERATIONS)
+            return new SearchPlan(SearchEngine.BRENT, 0, memoryBudget, stateCountBound);
+        return new SearchPlan(SearchEngine.TIME_EFFICIENT, (int) Math.min(limit, Integer.MAX_VALUE - 1),
+                memoryBudget, stateCountBound);
+    }
+
+    /***
+     * @return бюджет памяти по умолчанию: половина памяти, которую куча еще может занять
+     */
+    public static long defaultMemoryBudget() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        return (runtime.maxMemory() - usedMemory) / 100 * DEFAULT_BUDGET_PERCENT;
+    }
+
+    /***
+     * Верхняя оценка количества различных состояний массива: число способов разложить сумму неотрицательных
+     * значений на n слагаемых, C(S + n - 1, n - 1)
+     * @return оценка, Long.MAX_VALUE при переполнении или если в массиве есть отрицательные значения
+     */
+    static long stateCountBound(int[] arr) {
+        long sum = 0;
+        for (int value : arr) {
+            if (value < 0) return Long.MAX_VALUE;
+            sum += value;
+        }
+        long k = Math.min(sum, arr.length - 1L);
+        long bound = 1;
+        for (long i = 1; i <= k; i++) {
+            long factor = sum + arr.length - 1 - k + i;
+            if (bound > Long.MAX_VALUE / factor) return Long.MAX_VALUE;
+            bound = bound * factor / i; // произведение i подряд идущих чисел делится на i!
+        }
+        return bound;
+    }
+
+    /***
+     * @param cellBytes ширина ячейки в байтах (см. CellStorage.cellBytes)
+     * @return оценка памяти на один RedistributiveArray: значения, дерево максимумов, заголовки
+     */
+    static long estimateArrayBytes(int length, int cellBytes) {
+        return (long) cellBytes * length + length / 4 + 128;
+    }
+
+    /***
+     * @return способ поиска, с которого начинается поиск
+     */
+    public SearchEngine getEngine() {
+        return engine;
+    }
+
+    /***
+     * @return количество итераций, после которого история перестает помещаться в бюджет и поиск продолжается
+     * алгоритмом Брента; Integer.MAX_VALUE, если переключение не требуется
+     */
+    public int getHistoryIterationLimit() {
+        return historyIterationLimit;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /***
+     * @return верхняя оценка количества итераций до цикла, Long.MAX_VALUE если оценки нет
+     */
+    public long getStateCountBound() {
+        return stateCountBound;
+    }
+
+    @Override
+    public String toString() {
+        return engine +
+                (historyIterationLimit < Integer.MAX_VALUE && engine != SearchEngine.BRENT
+                        ? " -> " + SearchEngine.BRENT + " after " + historyIterationLimit + " iterations"
+                        : "") +
+                "; memory budget = " + memoryBudget + " bytes";
+    }
+}
@@ -0,0 +1,15 @@
+package cycles;
+
+/***
+ * Получатель сведений о ходе поиска с ограничениями (см. SearchLimits.withProgress); вызывается из потока поиска
+ * не чаще заданного интервала
+ */
+@FunctionalInterface
+public interface SearchProgressListener {
+
+    /***
+     * @param iterations количество сделанных шагов поиска
+     * @param fingerprint отпечаток текущего состояния массива
+     */
+    void progress(long iterations, long fingerprint);
+}
@@ -0,0 +1,33 @@
+package cycles;
+
+import java.util.HashMap;
+
+/***
+ * Рабочие структуры поиска цикла, которые переиспользуются от массива к массиву при пакетной обработке:
+ * массив перераспределения и история снимков состояний. Не потокобезопасен, принадлежит одному потоку.
+ */
+final class SearchScratch {
+    private RedistributiveArray array;
+    // карта: снимок состояния массива -> номер итерации
+    private final HashMap<ArraySnapshot, Integer> history = new HashMap<>();
+
+    /***
+     * @param arr непустой массив
+     * @return массив перераспределения в начальном состоянии arr; при совпадении длины - прежний объект
+     */
+    RedistributiveArray load(int[] arr) {
+        if (array == null || array.cells.length() != arr.length)
+            array = new RedistributiveArray(arr);
+        else
+            array.assign(arr);
+        return array;
+    }
+
+    /***
+     * @return пустая история; таблица прежней истории остается выделенной
+     */
+    HashMap<ArraySnapshot, Integer> history() {
+        history.clear();
+        return history;
+    }
+}
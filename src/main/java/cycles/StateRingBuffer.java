@@ -0,0 +1,103 @@
+package cycles;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Кольцевой буфер записей о состояниях массива (отпечаток, максимум, индекс максимума) для одного потока-писателя
+ * и одного потока-читателя. Блокировок нет: писатель публикует запись, продвигая head, читатель освобождает место,
+ * продвигая tail. Каждый поток хранит копию чужого счетчика и перечитывает его, только когда копия устарела.
+ */
+final class StateRingBuffer {
+    private final int mask;
+    private final long[] fingerprints;
+    // максимум в старших 32 битах, индекс максимума в младших
+    private final long[] maxima;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    // поля писателя
+    private long writeIndex;
+    private long cachedTail;
+    // поля читателя
+    private long readIndex;
+    private long cachedHead;
+
+    /***
+     * @param capacity вместимость, степень двойки
+     */
+    StateRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        this.mask = capacity - 1;
+        this.fingerprints = new long[capacity];
+        this.maxima = new long[capacity];
+    }
+
+    /***
+     * Вызывается писателем
+     * @return true, если в буфере есть место для записи
+     */
+    boolean hasRoom() {
+        if (writeIndex - cachedTail <= mask)
+            return true;
+        cachedTail = tail.get();
+        return writeIndex - cachedTail <= mask;
+    }
+
+    /***
+     * Публикует запись, вызывается писателем после hasRoom() == true
+     */
+    void publish(long fingerprint, int maxValue, int maxValueIndex) {
+        int slot = (int) writeIndex & mask;
+        fingerprints[slot] = fingerprint;
+        maxima[slot] = ((long) maxValue << 32) | (maxValueIndex & 0xFFFFFFFFL);
+        head.lazySet(++writeIndex);
+    }
+
+    /***
+     * Вызывается читателем
+     * @return true, если есть неполученная запись
+     */
+    boolean hasNext() {
+        if (readIndex < cachedHead)
+            return true;
+        cachedHead = head.get();
+        return readIndex < cachedHead;
+    }
+
+    /***
+     * @return отпечаток текущей записи, вызывается читателем после hasNext() == true
+     */
+    long fingerprint() {
+        return fingerprints[(int) readIndex & mask];
+    }
+
+    /***
+     * @return максимум текущей записи
+     */
+    int maxValue() {
+        return (int) (maxima[(int) readIndex & mask] >> 32);
+    }
+
+    /***
+     * @return индекс максимума текущей записи
+     */
+    int maxValueIndex() {
+        return (int) maxima[(int) readIndex & mask];
+    }
+
+    /***
+     * Освобождает текущую запись, вызывается читателем
+     */
+    void advance() {
+        tail.lazySet(++readIndex);
+    }
+
+    /***
+     * Очищает буфер; вызывается, когда писатель остановлен
+     */
+    void clear() {
+        writeIndex = cachedTail = readIndex = cachedHead = 0;
+        head.set(0);
+        tail.set(0);
+    }
+}
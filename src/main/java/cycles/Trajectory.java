@@ -0,0 +1,155 @@
+package cycles;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/***
+ * Курсор по траектории перераспределения максимума: последовательности состояний массива, начиная с заданного.
+ * Ведет собственную копию массива и делает шаг перераспределения только по запросу, поэтому каждое состояние
+ * стоит одного шага, без копирования массива. Максимум, его индекс и отпечаток текущего состояния читаются
+ * без выделения памяти, значения ячеек - поштучно или окном. Потоки stream и fingerprints ленивые, упорядоченные
+ * и бесконечные (у массива короче двух ячеек все состояния одинаковы); ограничивать их должен вызывающий код,
+ * например limit или takeWhile. Потоки сдвигают этот курсор, поэтому с курсора читается один поток за раз.
+ */
+public final class Trajectory {
+    private final RedistributiveArray current;
+    private long iteration;
+
+    /***
+     * @param start начальное состояние, не изменяется; null воспринимается как пустой массив
+     */
+    public Trajectory(RedistributiveArray start) {
+        this.current = new RedistributiveArray(start);
+    }
+
+    /***
+     * Переходит к следующему состоянию: одно перераспределение максимума
+     */
+    public void advance() {
+        current.redistributeMaxValue();
+        ++iteration;
+    }
+
+    /***
+     * @return количество перераспределений от начального состояния
+     */
+    public long getIteration() {
+        return iteration;
+    }
+
+    /***
+     * @return максимум текущего состояния, который будет распределен следующим шагом
+     */
+    public int getMaxValue() {
+        return current.getMaxValue();
+    }
+
+    public int getMaxValueIndex() {
+        return current.getMaxValueIndex();
+    }
+
+    /***
+     * @return отпечаток текущего состояния (см. RedistributiveArray.getFingerprint)
+     */
+    public long getFingerprint() {
+        return current.getFingerprint();
+    }
+
+    public int getLength() {
+        return current.getLength();
+    }
+
+    /***
+     * @return значение ячейки в текущем состоянии
+     */
+    public int getValue(int index) {
+        return current.getValue(index);
+    }
+
+    /***
+     * Копирует окно значений текущего состояния (см. RedistributiveArray.copyRangeInto)
+     */
+    public void copyWindowInto(int from, int to, int[] destination) {
+        current.copyRangeInto(from, to, destination);
+    }
+
+    /***
+     * @return поток состояний начиная с текущего, без значений ячеек
+     */
+    public Stream<TrajectoryStep> stream() {
+        return StreamSupport.stream(new StepSpliterator(false, 0, 0), false);
+    }
+
+    /***
+     * @param windowFrom индекс первой ячейки окна
+     * @param windowTo индекс за последней ячейкой окна
+     * @return поток состояний начиная с текущего; каждое состояние несет копию значений ячеек окна
+     * @throws IndexOutOfBoundsException если окно выходит за границы массива
+     */
+    public Stream<TrajectoryStep> stream(int windowFrom, int windowTo) {
+        Objects.checkFromToIndex(windowFrom, windowTo, current.getLength());
+        return StreamSupport.stream(new StepSpliterator(true, windowFrom, windowTo), false);
+    }
+
+    /***
+     * @return поток отпечатков состояний начиная с текущего, без выделения памяти на состояние
+     */
+    public LongStream fingerprints() {
+        return StreamSupport.longStream(new FingerprintSpliterator(), false);
+    }
+
+    /***
+     * Первое состояние - текущее, перед каждым следующим делается шаг: перераспределение не выполняется,
+     * пока потребитель не запросил состояние
+     */
+    private final class StepSpliterator extends Spliterators.AbstractSpliterator<TrajectoryStep> {
+        private final boolean windowed;
+        private final int windowFrom, windowTo;
+        private boolean started;
+
+        StepSpliterator(boolean windowed, int windowFrom, int windowTo) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.windowed = windowed;
+            this.windowFrom = windowFrom;
+            this.windowTo = windowTo;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TrajectoryStep> action) {
+            if (started)
+                advance();
+            started = true;
+            int[] window = null;
+            if (windowed) {
+                window = new int[windowTo - windowFrom];
+                current.copyRangeInto(windowFrom, windowTo, window);
+            }
+            action.accept(new TrajectoryStep(iteration, current.getMaxValue(), current.getMaxValueIndex(),
+                    current.getFingerprint(), windowFrom, window));
+            return true;
+        }
+    }
+
+    private final class FingerprintSpliterator extends Spliterators.AbstractLongSpliterator {
+        private boolean started;
+
+        FingerprintSpliterator() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (started)
+                advance();
+            started = true;
+            action.accept(current.getFingerprint());
+            return true;
+        }
+    }
+}
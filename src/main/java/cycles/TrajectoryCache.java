@@ -0,0 +1,179 @@
+package cycles;
+
+/***
+ * Общий для нескольких поисков кеш пройденных состояний: (отпечаток массива, длина массива) ->
+ * (расстояние до цикла, длина цикла). Массивы одной длины и суммы часто сходятся к одним и тем же состояниям,
+ * и поиск, дошедший до известного состояния, может закончиться сразу (см. DistributionCycles.evaluateAll).
+ * Состояния сравниваются только по отпечатку и длине, поэтому, как и у ArrayChangeLog без подтверждения,
+ * совпадение 64-битных отпечатков разных состояний даст неверный результат; вероятность этого пренебрежимо мала.
+ * Вместимость ограничена, при переполнении записи вытесняются алгоритмом CLOCK. Кеш разбит на сегменты
+ * со своими блокировками и может использоваться несколькими потоками одновременно.
+ */
+public final class TrajectoryCache {
+    // результат поиска в кеше, если состояния там нет
+    static final long NO_ENTRY = -1;
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final int capacity;
+
+    /***
+     * @param capacity наибольшее количество хранимых состояний, не меньше SEGMENT_COUNT
+     * @throws IllegalArgumentException если вместимость не положительна
+     */
+    public TrajectoryCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        int segmentCapacity = (capacity + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++)
+            segments[i] = new Segment(segmentCapacity);
+        this.capacity = segmentCapacity * SEGMENT_COUNT;
+    }
+
+    /***
+     * @return наибольшее количество хранимых состояний
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /***
+     * @return количество хранимых состояний
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    /***
+     * @param fingerprint отпечаток массива
+     * @param length длина массива
+     * @return расстояние до цикла в старших 32 битах и длина цикла в младших; NO_ENTRY, если состояния нет в кеше
+     */
+    long get(long fingerprint, int length) {
+        int hash = spread(fingerprint, length);
+        return segments[hash >>> 28].get(fingerprint, length, hash);
+    }
+
+    /***
+     * Запоминает состояние, при переполнении сегмента вытесняет одно из давно не запрошенных
+     * @param fingerprint отпечаток массива
+     * @param length длина массива
+     * @param distanceToCycle количество итераций от состояния до первого состояния цикла
+     * @param cyclePeriod длина цикла
+     */
+    void put(long fingerprint, int length, int distanceToCycle, int cyclePeriod) {
+        int hash = spread(fingerprint, length);
+        segments[hash >>> 28].put(fingerprint, length, hash, ((long) distanceToCycle << 32) | cyclePeriod);
+    }
+
+    private static int spread(long fingerprint, int length) {
+        long h = (fingerprint ^ length) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /***
+     * Сегмент кеша: записи лежат в массивах примитивов по кругу CLOCK, индекс по ключу - хеш-таблица
+     * с открытой адресацией, как в ArrayChangeLog
+     */
+    private static final class Segment {
+        private final long[] fingerprints;
+        private final int[] lengths;
+        private final long[] values;
+        // был ли запрос записи с момента, когда стрелка проходила ее в последний раз
+        private final boolean[] referenced;
+        // номер записи + 1, 0 - пустая ячейка
+        private final int[] table;
+        private int size;
+        private int hand;
+
+        Segment(int capacity) {
+            fingerprints = new long[capacity];
+            lengths = new int[capacity];
+            values = new long[capacity];
+            referenced = new boolean[capacity];
+            table = new int[Integer.highestOneBit(capacity) * 4];
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long get(long fingerprint, int length, int hash) {
+            int entry = table[findSlot(fingerprint, length, hash)] - 1;
+            if (entry < 0)
+                return NO_ENTRY;
+            referenced[entry] = true;
+            return values[entry];
+        }
+
+        synchronized void put(long fingerprint, int length, int hash, long value) {
+            int slot = findSlot(fingerprint, length, hash);
+            int entry = table[slot] - 1;
+            if (entry >= 0) {
+                values[entry] = value;
+                return;
+            }
+            if (size < fingerprints.length) {
+                entry = size++;
+            }
+            else {
+                entry = evict();
+                slot = findSlot(fingerprint, length, hash); // удаление сдвигает ключи таблицы
+            }
+            fingerprints[entry] = fingerprint;
+            lengths[entry] = length;
+            values[entry] = value;
+            referenced[entry] = false;
+            table[slot] = entry + 1;
+        }
+
+        /***
+         * Двигает стрелку до записи, которую не запрашивали с прошлого прохода, и удаляет ее из таблицы
+         * @return номер освобожденной записи
+         */
+        private int evict() {
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) % fingerprints.length;
+            }
+            int entry = hand;
+            hand = (hand + 1) % fingerprints.length;
+            removeSlot(findSlot(fingerprints[entry], lengths[entry], spread(fingerprints[entry], lengths[entry])));
+            return entry;
+        }
+
+        /***
+         * @return ячейка таблицы, в которой лежит ключ, или пустая ячейка, куда его следует положить
+         */
+        private int findSlot(long fingerprint, int length, int hash) {
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            int entry;
+            while ((entry = table[slot] - 1) >= 0 && (fingerprints[entry] != fingerprint || lengths[entry] != length))
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        /***
+         * Освобождает ячейку таблицы, сдвигая назад следующие за ней ключи, чтобы не разорвать цепочки проб
+         */
+        private void removeSlot(int slot) {
+            int mask = table.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            int entry;
+            while ((entry = table[next] - 1) >= 0) {
+                int home = spread(fingerprints[entry], lengths[entry]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            table[hole] = 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package cycles;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/***
+ * Состояние траектории перераспределения (см. Trajectory): номер итерации, максимум, который будет распределен
+ * на следующем шаге, его индекс и отпечаток состояния. Значения ячеек хранятся, только если запрошено окно.
+ */
+public final class TrajectoryStep {
+    private final long iteration;
+    private final int maxValue;
+    private final int maxValueIndex;
+    private final long fingerprint;
+    private final int windowFrom;
+    private final int[] window;
+
+    TrajectoryStep(long iteration, int maxValue, int maxValueIndex, long fingerprint, int windowFrom, int[] window) {
+        this.iteration = iteration;
+        this.maxValue = maxValue;
+        this.maxValueIndex = maxValueIndex;
+        this.fingerprint = fingerprint;
+        this.windowFrom = windowFrom;
+        this.window = window;
+    }
+
+    /***
+     * @return количество перераспределений от начала траектории
+     */
+    public long getIteration() {
+        return iteration;
+    }
+
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    public int getMaxValueIndex() {
+        return maxValueIndex;
+    }
+
+    /***
+     * @return отпечаток состояния (см. RedistributiveArray.getFingerprint)
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /***
+     * @return индекс первой ячейки окна
+     */
+    public int getWindowFrom() {
+        return windowFrom;
+    }
+
+    /***
+     * @return значения ячеек окна; null, если поток состояний создан без окна
+     */
+    public int[] getWindow() {
+        return window;
+    }
+
+    @Override
+    public String toString() {
+        return "Iteration " + iteration +
+                "; max = " + maxValue + " at " + maxValueIndex +
+                "; fingerprint = " + Long.toHexString(fingerprint) +
+                (window != null ? "; window from " + windowFrom + " = " + Arrays.toString(window) : "");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TrajectoryStep that = (TrajectoryStep) o;
+        return iteration == that.iteration &&
+                maxValue == that.maxValue &&
+                maxValueIndex == that.maxValueIndex &&
+                fingerprint == that.fingerprint &&
+                windowFrom == that.windowFrom &&
+                Arrays.equals(window, that.window);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(iteration, maxValue, maxValueIndex, fingerprint, windowFrom) + Arrays.hashCode(window);
+    }
+}
@@ -0,0 +1,86 @@
+package cycles;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/***
+ * Векторная реализация ядра на jdk.incubator.vector: прибавка и веса отпечатка считаются целыми векторами
+ * (веса - тот же финализатор SplitMix64, что и в RedistributiveArray.weight, по всем дорожкам сразу),
+ * максимум ищется векторной редукцией и затем первой дорожкой, равной максимуму. Хвосты короче вектора
+ * обрабатываются скалярно. Результаты совпадают со скалярной реализацией бит в бит.
+ */
+final class VectorRangeKernel extends RangeKernel {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // номера дорожек 0, 1, 2, ...
+    private static final long[] LANE_INDICES = new long[LONGS.length()];
+
+    static {
+        for (int lane = 0; lane < LANE_INDICES.length; lane++)
+            LANE_INDICES[lane] = lane;
+    }
+
+    private final ScalarRangeKernel scalar = new ScalarRangeKernel();
+
+    @Override
+    long addToRange(int[] data, int from, int to, int value) {
+        int i = from;
+        int vectorEnd = from + INTS.loopBound(to - from);
+        IntVector increment = IntVector.broadcast(INTS, value);
+        for (; i < vectorEnd; i += INTS.length())
+            IntVector.fromArray(INTS, data, i).add(increment).intoArray(data, i);
+        for (; i < to; i++)
+            data[i] += value;
+        return weightSum(from, to);
+    }
+
+    @Override
+    long weightSum(int from, int to) {
+        LongVector lanes = LongVector.fromArray(LONGS, LANE_INDICES, 0);
+        LongVector sum = LongVector.zero(LONGS);
+        int i = from;
+        int vectorEnd = from + LONGS.loopBound(to - from);
+        for (; i < vectorEnd; i += LONGS.length()) {
+            // вес ячейки i - mix(i + 1)
+            LongVector x = lanes.add(i + 1L).mul(0x9E3779B97F4A7C15L);
+            x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 30)).mul(0xBF58476D1CE4E5B9L);
+            x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 27)).mul(0x94D049BB133111EBL);
+            sum = sum.add(x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 31)));
+        }
+        long rangeWeight = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++)
+            rangeWeight += RedistributiveArray.weight(i);
+        return rangeWeight;
+    }
+
+    @Override
+    int leftmostMaxIndex(int[] data, int offset, int from, int to) {
+        int vectorEnd = from + INTS.loopBound(to - from);
+        if (vectorEnd == from)
+            return scalar.leftmostMaxIndex(data, offset, from, to);
+        IntVector shift = IntVector.broadcast(INTS, offset);
+        IntVector maxima = IntVector.fromArray(INTS, data, from).add(shift);
+        for (int i = from + INTS.length(); i < vectorEnd; i += INTS.length())
+            maxima = maxima.max(IntVector.fromArray(INTS, data, i).add(shift));
+        int max = maxima.reduceLanes(VectorOperators.MAX);
+        for (int i = vectorEnd; i < to; i++)
+            max = Math.max(max, data[i] + offset);
+        // первая ячейка, равная максимуму
+        for (int i = from; i < vectorEnd; i += INTS.length()) {
+            int lane = IntVector.fromArray(INTS, data, i).add(shift).compare(VectorOperators.EQ, max).firstTrue();
+            if (lane < INTS.length())
+                return i + lane;
+        }
+        for (int i = vectorEnd; ; i++) {
+            if (data[i] + offset == max)
+                return i;
+        }
+    }
+
+    @Override
+    String name() {
+        return "vector " + INTS.vectorBitSize() + " bit";
+    }
+}
@@ -50,4 +50,46 @@ public class ArrayChangeLogTests {
         expectedIterations.add(1);
         assert(log.getIterationsMatchingHashCode(arrHash).equals(expectedIterations));
     }
+
+    @Test
+    public void rollbackLookupTest() {
+        int[] arr = {0, 2, 7, 0};
+        RedistributiveLoggingArray redistributiveLoggingArray = new RedistributiveLoggingArray(arr);
+        ArrayChangeLog log = redistributiveLoggingArray.getChangeLog();
+        for (int i = 0; i < 100; i++)
+            redistributiveLoggingArray.redistributeMaxValue();
+        assertEquals(101, log.size());
+        for (int i = 0; i < log.size(); i++)
+            assert(log.getIterationsMatchingFingerprint(log.getFingerprint(i)).contains(i));
+        long lastFingerprint = redistributiveLoggingArray.getFingerprint();
+        int lastIteration = log.getLastIterationMatchingFingerprint(lastFingerprint);
+        assertEquals(100, lastIteration);
+        // период цикла равен 4, то же состояние было на 96-й итерации
+        assertEquals(96, log.getPreviousIterationMatchingFingerprint(lastIteration));
+        redistributiveLoggingArray.rollback(3);
+        assertEquals(4, log.size());
+        assertEquals(-1, log.getLastIterationMatchingFingerprint(lastFingerprint));
+        assertEquals(log.getEntry(3), log.getLastEntry());
+        assertNull(log.getEntry(4));
+    }
+
+    @Test
+    public void visitMatchingIterationsTest() {
+        int[] arr = {0, 2, 7, 0};
+        RedistributiveLoggingArray redistributiveLoggingArray = new RedistributiveLoggingArray(arr);
+        for (int i = 0; i < 10; i++)
+            redistributiveLoggingArray.redistributeMaxValue();
+        ArrayChangeLog log = redistributiveLoggingArray.getChangeLog();
+        long fingerprint = log.getFingerprint(2);
+        List<Integer> visited = new ArrayList<>();
+        log.forEachIterationMatchingFingerprint(fingerprint, visited::add);
+        // состояние второй итерации повторяется каждые 4 итерации, обход идет от последней к первой
+        List<Integer> expected = new ArrayList<>();
+        expected.add(10);
+        expected.add(6);
+        expected.add(2);
+        assertEquals(expected, visited);
+        log.forEachIterationMatchingFingerprint(561, iteration -> visited.add(-1));
+        assertEquals(3, visited.size());
+    }
 }
@@ -0,0 +1,101 @@
+import cycles.ArrayInput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayInputTests {
+
+    private static ArrayInput input(byte[] data, ArrayInput.Format format) {
+        return new ArrayInput(Channels.newChannel(new ByteArrayInputStream(data)), format);
+    }
+
+    @Test
+    void textTest() throws IOException {
+        String text = "0 2 7 0\r\n\n  -1,-1, -1\n2147483647 -2147483648\t5\n\n1";
+        ArrayInput input = input(text.getBytes(StandardCharsets.US_ASCII), ArrayInput.Format.TEXT);
+        assertArrayEquals(new int[]{0, 2, 7, 0}, input.next());
+        assertArrayEquals(new int[]{-1, -1, -1}, input.next());
+        assertArrayEquals(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, 5}, input.next());
+        assertArrayEquals(new int[]{1}, input.next());
+        assertNull(input.next());
+        assertNull(input.next());
+    }
+
+    @Test
+    void longTextLineTest() throws IOException {
+        // строка длиннее буфера чтения
+        StringBuilder text = new StringBuilder();
+        int[] expected = new int[100_000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i * 7919 - 300_000;
+            text.append(expected[i]).append(' ');
+        }
+        ArrayInput input = input(text.append('\n').toString().getBytes(StandardCharsets.US_ASCII),
+                ArrayInput.Format.TEXT);
+        assertArrayEquals(expected, input.next());
+        assertNull(input.next());
+    }
+
+    @Test
+    void malformedTextTest() throws IOException {
+        ArrayInput letter = input("1 2\n3 x\n".getBytes(StandardCharsets.US_ASCII), ArrayInput.Format.TEXT);
+        assertArrayEquals(new int[]{1, 2}, letter.next());
+        assertThrows(IOException.class, letter::next);
+        ArrayInput overflow = input("2147483648\n".getBytes(StandardCharsets.US_ASCII), ArrayInput.Format.TEXT);
+        assertThrows(IOException.class, overflow::next);
+        ArrayInput dangling = input("1 - 2\n".getBytes(StandardCharsets.US_ASCII), ArrayInput.Format.TEXT);
+        assertThrows(IOException.class, dangling::next);
+    }
+
+    @Test
+    void binaryTest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        int[][] arrays = {{0, 2, 7, 0}, {}, {-1, Integer.MAX_VALUE}};
+        for (int[] arr : arrays) {
+            data.writeInt(arr.length);
+            for (int value : arr)
+                data.writeInt(value);
+        }
+        ArrayInput input = input(bytes.toByteArray(), ArrayInput.Format.BINARY);
+        for (int[] arr : arrays)
+            assertArrayEquals(arr, input.next());
+        assertNull(input.next());
+
+        data.writeInt(3);
+        data.writeInt(1);
+        ArrayInput truncated = input(bytes.toByteArray(), ArrayInput.Format.BINARY);
+        for (int[] arr : arrays)
+            assertArrayEquals(arr, truncated.next());
+        assertThrows(IOException.class, truncated::next);
+    }
+
+    @Test
+    void corruptLengthTest() throws IOException {
+        // заявленная длина не выделяется заранее: запись кончается раньше, чем массив дорастет до нее
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(Integer.MAX_VALUE);
+        data.writeInt(1);
+        assertThrows(EOFException.class, input(bytes.toByteArray(), ArrayInput.Format.BINARY)::next);
+        // массив длиннее начального выделения читается целиком
+        bytes.reset();
+        int[] expected = new int[200_000];
+        data.writeInt(expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i - 100_000;
+            data.writeInt(expected[i]);
+        }
+        ArrayInput input = input(bytes.toByteArray(), ArrayInput.Format.BINARY);
+        assertArrayEquals(expected, input.next());
+        assertNull(input.next());
+    }
+}
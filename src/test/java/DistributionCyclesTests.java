@@ -1,8 +1,30 @@
+import cycles.CancellationToken;
 import cycles.CycleSearchResult;
 import cycles.DistributionCycles;
+import cycles.LimitedSearchResult;
+import cycles.RedistributiveArray;
+import cycles.ResultStore;
+import cycles.SearchEngine;
+import cycles.SearchLimits;
+import cycles.TrajectoryCache;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
 class DistributionCyclesTests {
 
     @Test
@@ -66,4 +88,303 @@ class DistributionCyclesTests {
         CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr);
         assertEquals(expected, actual);
     }
+
+    @Test
+    void brentEmptyArrayTest() {
+        CycleSearchResult expected = new CycleSearchResult(0, 0);
+        assertEquals(expected, DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(null));
+        assertEquals(expected, DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(new int[0]));
+    }
+
+    @Test
+    void brentOneElementArrayTest() {
+        int[] arr = {1};
+        CycleSearchResult expected = new CycleSearchResult(1, 1);
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(arr);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void brentSmallArrayTest() {
+        int[] arr = {0, 2, 7, 0};
+        CycleSearchResult expected = new CycleSearchResult(4, 5);
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(arr);
+        assertEquals(expected, actual);
+        assertEquals(1, actual.getPreperiodLength());
+    }
+
+    @Test
+    void brentMediumArrayTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(arr);
+        assertEquals(expected, actual);
+        assertEquals(6169, actual.getPreperiodLength());
+    }
+
+    @Test
+    void offHeapMediumArrayTest() throws IOException {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        Path logDirectory = Files.createTempDirectory("changelog");
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCycleOffHeap(arr, logDirectory);
+        assertEquals(expected, actual);
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            assertEquals(0, files.count());
+        }
+        Files.delete(logDirectory);
+    }
+
+    @Test
+    void distinguishedPointsSmallArrayTest() {
+        int[] arr = {0, 2, 7, 0};
+        CycleSearchResult expected = new CycleSearchResult(4, 5);
+        for (int distinguishedBits = 0; distinguishedBits <= 8; distinguishedBits += 4) {
+            CycleSearchResult actual =
+                    DistributionCycles.evaluateRedistributionOfMaxValueCycleDistinguishedPoints(arr, distinguishedBits);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void distinguishedPointsMediumArrayTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        for (int distinguishedBits = 0; distinguishedBits <= 16; distinguishedBits += 4) {
+            CycleSearchResult actual =
+                    DistributionCycles.evaluateRedistributionOfMaxValueCycleDistinguishedPoints(arr, distinguishedBits);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void budgetSwitchBeforeCycleTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        // история на 2000 итераций по 200 байт (снимок 16 однобайтовых ячеек), цикл начинается на 6169-й
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, 2000 * 200 + 600);
+        assertEquals(expected, actual);
+        assertEquals(SearchEngine.TIME_EFFICIENT, actual.getPlan().getEngine());
+        assertEquals(2000, actual.getEngineSwitchIteration());
+    }
+
+    @Test
+    void budgetSwitchInsideCycleTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        // история на 7000 итераций: начало цикла уже пройдено, но повтор еще не встречен
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, 7000 * 200 + 600);
+        assertEquals(expected, actual);
+        assertEquals(7000, actual.getEngineSwitchIteration());
+    }
+
+    @Test
+    void budgetPlanTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult tiny = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, 1000);
+        assertEquals(new CycleSearchResult(1695, 7864), tiny);
+        assertEquals(SearchEngine.BRENT, tiny.getPlan().getEngine());
+        CycleSearchResult small = DistributionCycles.evaluateRedistributionOfMaxValueCycle(new int[]{0, 2, 7, 0}, 1 << 16);
+        assertEquals(new CycleSearchResult(4, 5), small);
+        assertEquals(SearchEngine.TIME_EFFICIENT, small.getPlan().getEngine());
+        assertTrue(small.getEngineSwitchIteration() < 0);
+    }
+
+    @Test
+    void batchOrderTest() {
+        int[][] arrays = new int[200][];
+        for (int i = 0; i < arrays.length; i++)
+            arrays[i] = new int[]{i % 7, (i * 3) % 11, 0, i % 5};
+        arrays[3] = null;
+        arrays[4] = new int[0];
+        arrays[5] = new int[]{0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CycleSearchResult[] actual = DistributionCycles.evaluateAll(arrays, pool);
+            assertEquals(arrays.length, actual.length);
+            for (int i = 0; i < arrays.length; i++)
+                assertEquals(DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(arrays[i]), actual[i]);
+            assertEquals(new CycleSearchResult(1695, 7864), actual[5]);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sharedTrajectoryCacheTest() {
+        // массивы одной длины и суммы: траектории сходятся, часть поисков заканчивается по кешу
+        Random random = new Random(42);
+        int[][] arrays = new int[300][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = new int[8];
+            for (int k = 0; k < 40; k++)
+                arrays[i][random.nextInt(8)]++;
+        }
+        arrays[7] = new int[]{-1, -1, -1};
+        arrays[8] = null;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // маленький кеш проверяет вытеснение, в том числе части состояний цикла
+            for (TrajectoryCache cache : new TrajectoryCache[]{new TrajectoryCache(1 << 16), new TrajectoryCache(16)}) {
+                CycleSearchResult[] actual = DistributionCycles.evaluateAll(arrays, pool, cache);
+                for (int i = 0; i < arrays.length; i++)
+                    assertEquals(DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(arrays[i]), actual[i]);
+                assertTrue(cache.size() > 0 && cache.size() <= cache.capacity());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+        TrajectoryCache cache = new TrajectoryCache(1 << 10);
+        int[] arr = {0, 2, 7, 0};
+        assertEquals(new CycleSearchResult(4, 5), DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, cache));
+        // та же траектория со второго шага: результат целиком из кеша
+        assertEquals(new CycleSearchResult(4, 4),
+                DistributionCycles.evaluateRedistributionOfMaxValueCycle(new int[]{2, 4, 1, 2}, cache));
+        assertEquals(new CycleSearchResult(4, 5), DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, cache));
+    }
+
+    @Test
+    void resultStoreTest() throws IOException {
+        Path directory = Files.createTempDirectory("result-store");
+        Path file = directory.resolve("results.bin");
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        try {
+            try (ResultStore store = ResultStore.open(file, 1 << 16)) {
+                assertNull(store.get(arr));
+                assertEquals(new CycleSearchResult(1695, 7864),
+                        DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, store));
+            }
+            // после повторного открытия результат берется из файла
+            try (ResultStore store = ResultStore.open(file, 1 << 16)) {
+                assertEquals(new CycleSearchResult(1695, 7864), store.get(arr));
+                int[] other = arr.clone();
+                other[0] = 1;
+                assertNull(store.get(other));
+            }
+            // маленькое хранилище вытесняет старые ключи, но не возвращает чужих результатов
+            try (ResultStore store = ResultStore.open(file, 1 << 12)) {
+                assertNull(store.get(arr));
+                for (int i = 0; i < 500; i++) {
+                    int[] small = {i % 7, (i * 3) % 11, 0, i % 5, i};
+                    assertEquals(DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(small),
+                            DistributionCycles.evaluateRedistributionOfMaxValueCycle(small, store));
+                }
+                for (int i = 0; i < 500; i++) {
+                    int[] small = {i % 7, (i * 3) % 11, 0, i % 5, i};
+                    CycleSearchResult stored = store.get(small);
+                    assertTrue(stored == null
+                            || stored.equals(DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(small)));
+                }
+                // последний добавленный ключ не вытеснен
+                int[] last = {499 % 7, (499 * 3) % 11, 0, 499 % 5, 499};
+                assertEquals(DistributionCycles.evaluateRedistributionOfMaxValueCycleBrent(last), store.get(last));
+            }
+        }
+        finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void resumableSearchTest() throws IOException, InterruptedException {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        Path directory = Files.createTempDirectory("checkpoints");
+        Path file = directory.resolve("search.bin");
+        try {
+            // прерванный поиск останавливается на первой контрольной точке и оставляет файл
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class,
+                    () -> DistributionCycles.evaluateRedistributionOfMaxValueCycleResumable(arr, file, 1000));
+            long firstLength = Files.size(file);
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class,
+                    () -> DistributionCycles.evaluateRedistributionOfMaxValueCycleResumable(arr, file, 1000));
+            assertTrue(Files.size(file) > firstLength);
+            // недописанный хвост отбрасывается
+            Files.write(file, new byte[]{0, 0, 0, 5, 1, 2, 3}, StandardOpenOption.APPEND);
+            assertEquals(expected, DistributionCycles.evaluateRedistributionOfMaxValueCycleResumable(arr, file, 1000));
+            assertFalse(Files.exists(file));
+            // файл другого массива не мешает поиску
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class,
+                    () -> DistributionCycles.evaluateRedistributionOfMaxValueCycleResumable(new int[]{0, 2, 7, 0, 9},
+                            file, 1));
+            assertEquals(expected, DistributionCycles.evaluateRedistributionOfMaxValueCycleResumable(arr, file, 1));
+        }
+        finally {
+            Thread.interrupted();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void pipelinedSmallArrayTest() {
+        int[] arr = {0, 2, 7, 0};
+        CycleSearchResult expected = new CycleSearchResult(4, 5);
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCyclePipelined(arr);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void pipelinedMediumArrayTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        CycleSearchResult actual = DistributionCycles.evaluateRedistributionOfMaxValueCyclePipelined(arr);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void limitedSearchTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        CycleSearchResult expected = new CycleSearchResult(1695, 7864);
+        LimitedSearchResult unlimited = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr,
+                SearchLimits.none());
+        assertTrue(unlimited.isCycleFound());
+        assertEquals(expected, unlimited.getResult());
+        // поиск по истории делает ровно столько шагов, сколько итераций до цикла
+        assertTrue(DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr,
+                SearchLimits.none().withIterationLimit(7864)).isCycleFound());
+
+        LimitedSearchResult stopped = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr,
+                SearchLimits.none().withIterationLimit(1000));
+        assertFalse(stopped.isCycleFound());
+        assertNull(stopped.getResult());
+        assertEquals(LimitedSearchResult.StopReason.ITERATION_LIMIT, stopped.getStopReason());
+        assertEquals(1000, stopped.getIterationsDone());
+        RedistributiveArray walker = new RedistributiveArray(arr);
+        for (int i = 0; i < 1000; i++)
+            walker.redistributeMaxValue();
+        assertEquals(walker.getFingerprint(), stopped.getFingerprint());
+
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        LimitedSearchResult cancelled = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr,
+                SearchLimits.none().withCancellation(token));
+        assertEquals(LimitedSearchResult.StopReason.CANCELLED, cancelled.getStopReason());
+        assertEquals(0, cancelled.getIterationsDone());
+        assertEquals(RedistributiveArray.fingerprintOf(arr), cancelled.getFingerprint());
+        assertEquals(LimitedSearchResult.StopReason.DEADLINE, DistributionCycles.evaluateRedistributionOfMaxValueCycle(
+                arr, SearchLimits.none().withTimeout(Duration.ZERO)).getStopReason());
+        assertEquals(LimitedSearchResult.StopReason.DEADLINE, DistributionCycles.evaluateRedistributionOfMaxValueCycle(
+                arr, SearchLimits.none().withDeadline(System.nanoTime() - 1)).getStopReason());
+        assertThrows(IllegalArgumentException.class, () -> SearchLimits.none().withIterationLimit(0));
+
+        // сведения о ходе поиска приходят на проверках ограничений, число шагов растет
+        List<Long> progress = new ArrayList<>();
+        LimitedSearchResult limited = DistributionCycles.evaluateRedistributionOfMaxValueCycle(arr, SearchLimits.none()
+                .withTimeout(Duration.ofMinutes(1))
+                .withCancellation(new CancellationToken())
+                .withProgress((iterations, fingerprint) -> progress.add(iterations), Duration.ZERO));
+        assertEquals(expected, limited.getResult());
+        assertFalse(progress.isEmpty());
+        for (int i = 1; i < progress.size(); i++)
+            assertTrue(progress.get(i) > progress.get(i - 1));
+        assertTrue(progress.get(progress.size() - 1) <= limited.getIterationsDone());
+        assertTrue(DistributionCycles.evaluateRedistributionOfMaxValueCycle(null, SearchLimits.none()).isCycleFound());
+    }
 }
@@ -1,9 +1,28 @@
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import cycles.CycleSearchResult;
+import cycles.DistributionCycles;
 import cycles.RedistributiveArray;
+import cycles.Trajectory;
+import cycles.TrajectoryStep;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 class RedistributiveArrayTests {
 
     @Test
@@ -61,4 +80,233 @@ class RedistributiveArrayTests {
         array.rollback(7, 2);
         assertArrayEquals(arr, array.getData());
     }
+
+    @Test
+    void fingerprintTest() {
+        int[] arr = {3, 0, 11, 4, 7};
+        RedistributiveArray array = new RedistributiveArray(arr);
+        assertEquals(RedistributiveArray.fingerprintOf(arr), array.getFingerprint());
+        for (int i = 0; i < 20; i++) {
+            array.redistributeMaxValue();
+            assertEquals(RedistributiveArray.fingerprintOf(array.getData()), array.getFingerprint());
+        }
+        int[] beforeRollback = array.getData();
+        int maxValue = array.getMaxValue();
+        int maxValueIndex = array.getMaxValueIndex();
+        array.redistributeMaxValue();
+        array.rollback(maxValue, maxValueIndex);
+        assertArrayEquals(beforeRollback, array.getData());
+        assertEquals(RedistributiveArray.fingerprintOf(beforeRollback), array.getFingerprint());
+    }
+
+    @Test
+    void wideArrayMaxTrackingTest() {
+        int[] arr = new int[100];
+        for (int i = 0; i < arr.length; i++)
+            arr[i] = (i * 37) % 11;
+        arr[70] = 250;
+        RedistributiveArray array = new RedistributiveArray(arr);
+        for (int step = 0; step < 500; step++) {
+            array.redistributeMaxValue();
+            int[] data = array.getData();
+            int expectedIndex = 0;
+            for (int i = 1; i < data.length; i++) {
+                if (data[i] > data[expectedIndex])
+                    expectedIndex = i;
+            }
+            assertEquals(expectedIndex, array.getMaxValueIndex());
+            assertEquals(data[expectedIndex], array.getMaxValue());
+        }
+    }
+
+    @Test
+    void parallelRangeTest() {
+        // остаток длиннее порога параллельной обработки и переходит через конец массива
+        int length = 300000;
+        int[] arr = new int[length];
+        for (int i = 0; i < arr.length; i++)
+            arr[i] = (i * 37) % 11;
+        arr[length - 1000] = 3 * length + length / 2;
+        RedistributiveArray array = new RedistributiveArray(arr);
+        int[] expected = arr.clone();
+        for (int step = 0; step < 3; step++) {
+            array.redistributeMaxValue();
+            int maxIndex = 0;
+            for (int i = 1; i < expected.length; i++) {
+                if (expected[i] > expected[maxIndex])
+                    maxIndex = i;
+            }
+            int maxValue = expected[maxIndex];
+            expected[maxIndex] = 0;
+            for (int k = 1; k <= maxValue; k++)
+                expected[(maxIndex + k) % length] += 1;
+            assertArrayEquals(expected, array.getData());
+            assertEquals(RedistributiveArray.fingerprintOf(expected), array.getFingerprint());
+        }
+    }
+
+    @Test
+    void narrowCellsTest() {
+        // суммы на границах однобайтовых и двухбайтовых ячеек: значения не должны теряться при переносе
+        int[][] arrays = {{200, 0, 55}, {0, 65535, 0, 0, 0}, {255}, {30000, 35536, 0}};
+        for (int[] arr : arrays) {
+            RedistributiveArray array = new RedistributiveArray(arr);
+            int[] expected = arr.clone();
+            for (int step = 0; step < 50; step++) {
+                array.redistributeMaxValue();
+                int maxIndex = 0;
+                for (int i = 1; i < expected.length; i++) {
+                    if (expected[i] > expected[maxIndex])
+                        maxIndex = i;
+                }
+                int maxValue = expected[maxIndex];
+                if (expected.length > 1) {
+                    expected[maxIndex] = 0;
+                    for (int i = 0; i < expected.length; i++)
+                        expected[i] += maxValue / expected.length;
+                    for (int k = 1; k <= maxValue % expected.length; k++)
+                        expected[(maxIndex + k) % expected.length] += 1;
+                }
+                assertArrayEquals(expected, array.getData());
+                assertEquals(RedistributiveArray.fingerprintOf(expected), array.getFingerprint());
+            }
+        }
+    }
+
+    @Test
+    void copyIntoTest() {
+        int[] arr = {0, 2, 7, 0};
+        int[] expected = {2, 4, 1, 2};
+        RedistributiveArray array = new RedistributiveArray(arr);
+        array.redistributeMaxValue();
+        int[] destination = new int[4];
+        array.copyInto(destination);
+        assertArrayEquals(expected, destination);
+        IntBuffer buffer = IntBuffer.allocate(6);
+        buffer.put(-1);
+        array.copyInto(buffer);
+        assertEquals(5, buffer.position());
+        assertArrayEquals(new int[]{-1, 2, 4, 1, 2, 0}, buffer.array());
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], array.getValue(i));
+        assertEquals(4, array.getLength());
+        assertThrows(IllegalArgumentException.class, () -> array.copyInto(new int[3]));
+    }
+
+    @Test
+    void trajectoryTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        RedistributiveArray start = new RedistributiveArray(arr);
+        List<TrajectoryStep> steps = start.trajectory().limit(100).collect(Collectors.toList());
+        List<TrajectoryStep> windowed = new Trajectory(start).stream(3, 7).limit(100).collect(Collectors.toList());
+        long[] fingerprints = new Trajectory(start).fingerprints().limit(100).toArray();
+        // начальный массив не изменяется
+        assertArrayEquals(arr, start.getData());
+        RedistributiveArray walker = new RedistributiveArray(arr);
+        for (int i = 0; i < 100; i++) {
+            TrajectoryStep step = steps.get(i);
+            assertEquals(i, step.getIteration());
+            assertEquals(walker.getMaxValue(), step.getMaxValue());
+            assertEquals(walker.getMaxValueIndex(), step.getMaxValueIndex());
+            assertEquals(walker.getFingerprint(), step.getFingerprint());
+            assertNull(step.getWindow());
+            assertArrayEquals(Arrays.copyOfRange(walker.getData(), 3, 7), windowed.get(i).getWindow());
+            assertEquals(walker.getFingerprint(), fingerprints[i]);
+            walker.redistributeMaxValue();
+        }
+        // поток делает шаг только перед следующим запрошенным состоянием
+        Trajectory trajectory = new Trajectory(start);
+        assertEquals(steps.get(9), trajectory.stream().skip(9).findFirst().get());
+        assertEquals(9, trajectory.getIteration());
+        trajectory.advance();
+        int[] window = new int[2];
+        trajectory.copyWindowInto(14, 16, window);
+        assertArrayEquals(new int[]{trajectory.getValue(14), trajectory.getValue(15)}, window);
+        assertEquals(steps.get(10).getFingerprint(), trajectory.getFingerprint());
+        assertThrows(IndexOutOfBoundsException.class, () -> trajectory.stream(10, 17));
+        assertThrows(IndexOutOfBoundsException.class, () -> trajectory.copyWindowInto(0, 3, window));
+    }
+
+    @Test
+    void mappedCopyDirectoryTest() throws IOException {
+        // массив из нулей: цикл находится сразу, но копии длиннее HEAP_COPY_LIMIT все равно создаются в файлах
+        Path directory = Files.createTempDirectory("mapped-copies");
+        Path file = directory.resolve("zeros.bin");
+        Path missing = directory.resolve("missing");
+        try {
+            Files.write(file, new byte[4 * ((1 << 20) + 1)]);
+            CycleSearchResult expected = new CycleSearchResult(1, 1);
+            RedistributiveArray copiedToMissing = RedistributiveArray.map(file, ByteOrder.BIG_ENDIAN, missing);
+            // копии идут в заданный каталог, а не в java.io.tmpdir
+            assertThrows(UncheckedIOException.class,
+                    () -> DistributionCycles.evaluateRedistributionOfMaxValueCycleBrentFrom(copiedToMissing));
+            assertEquals(expected, DistributionCycles.evaluateRedistributionOfMaxValueCycleBrentFrom(
+                    RedistributiveArray.map(file, ByteOrder.BIG_ENDIAN, directory)));
+            // поиск с историей копирует массив в каталог истории, а не в каталог копий массива
+            assertEquals(expected,
+                    DistributionCycles.evaluateRedistributionOfMaxValueCycleOffHeapFrom(copiedToMissing, directory));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(1, files.count()); // временные файлы копий удалены
+            }
+        }
+        finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void mappedArrayTest() throws IOException {
+        Path file = Files.createTempFile("mapped-array", ".bin");
+        try {
+            Random random = new Random(7);
+            int[] arr = new int[(1 << 20) + 100];
+            for (int i = 0; i < arr.length; i += 1 + random.nextInt(1000))
+                arr[i] = random.nextInt(5_000_000) - 1000;
+            ByteBuffer bytes = ByteBuffer.allocate(4 * arr.length).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asIntBuffer().put(arr);
+            Files.write(file, bytes.array());
+
+            RedistributiveArray mapped = RedistributiveArray.map(file, ByteOrder.LITTLE_ENDIAN);
+            RedistributiveArray heap = new RedistributiveArray(arr);
+            assertEquals(arr.length, mapped.getLength());
+            assertEquals(heap.getFingerprint(), mapped.getFingerprint());
+            // копия длиннее HEAP_COPY_LIMIT тоже вне кучи
+            RedistributiveArray start = new RedistributiveArray(mapped);
+            for (int i = 0; i < 50; i++) {
+                heap.redistributeMaxValue();
+                mapped.redistributeMaxValue();
+                assertEquals(heap.getMaxValue(), mapped.getMaxValue());
+                assertEquals(heap.getMaxValueIndex(), mapped.getMaxValueIndex());
+                assertEquals(heap.getFingerprint(), mapped.getFingerprint());
+            }
+            assertArrayEquals(heap.getData(), mapped.getData());
+            assertArrayEquals(arr, start.getData());
+            // файл отображен без записи в него
+            assertArrayEquals(bytes.array(), Files.readAllBytes(file));
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void mappedArrayCycleTest() throws IOException {
+        Path file = Files.createTempFile("mapped-array", ".bin");
+        try {
+            int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+            ByteBuffer bytes = ByteBuffer.allocate(4 * arr.length);
+            bytes.asIntBuffer().put(arr);
+            Files.write(file, bytes.array());
+            RedistributiveArray mapped = RedistributiveArray.map(file, ByteOrder.BIG_ENDIAN);
+            assertEquals(new CycleSearchResult(1695, 7864),
+                    DistributionCycles.evaluateRedistributionOfMaxValueCycleBrentFrom(mapped));
+            assertEquals(new CycleSearchResult(1695, 7864),
+                    DistributionCycles.evaluateRedistributionOfMaxValueCycleOffHeapFrom(mapped, file.getParent()));
+            assertArrayEquals(arr, mapped.getData());
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
 }
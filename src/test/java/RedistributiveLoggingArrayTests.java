@@ -2,6 +2,8 @@ import cycles.RedistributiveArray;
 import cycles.RedistributiveLoggingArray;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class RedistributiveLoggingArrayTests {
@@ -151,4 +153,53 @@ public class RedistributiveLoggingArrayTests {
         assertEquals(3, redistributiveLoggingArray.getIterationCount());
     }
 
+
+    @Test
+    public void checkpointRecoveryTest() {
+        int[] arr0 = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        RedistributiveArray reference = new RedistributiveArray(arr0);
+        RedistributiveLoggingArray redistributiveLoggingArray = new RedistributiveLoggingArray(arr0, 10);
+        int[][] states = new int[101][];
+        states[0] = arr0;
+        for (int i = 1; i <= 100; i++) {
+            reference.redistributeMaxValue();
+            redistributiveLoggingArray.redistributeMaxValue();
+            states[i] = reference.getData();
+        }
+        for (int i = 0; i <= 100; i++)
+            assertArrayEquals(states[i], redistributiveLoggingArray.recover(i));
+        redistributiveLoggingArray.rollback(55);
+        for (int i = 0; i <= 55; i++)
+            assertArrayEquals(states[i], redistributiveLoggingArray.recover(i));
+        assertArrayEquals(states[55], redistributiveLoggingArray.getData());
+    }
+
+    @Test
+    public void adaptiveCheckpointIntervalTest() {
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        RedistributiveLoggingArray redistributiveLoggingArray = new RedistributiveLoggingArray(arr);
+        int initialInterval = redistributiveLoggingArray.getCheckpointInterval();
+        while (!redistributiveLoggingArray.isCycleFound())
+            redistributiveLoggingArray.redistributeMaxValue();
+        assertEquals(1695, redistributiveLoggingArray.getCyclePeriod());
+        assertTrue(redistributiveLoggingArray.getCheckpointInterval() > initialInterval);
+    }
+
+    @Test
+    public void recoverIntoTest() {
+        int[] arr0 = {0, 2, 7, 0};
+        int[] arr1 = {2, 4, 1, 2};
+        int[] arr3 = {0, 2, 3, 4};
+        RedistributiveLoggingArray redistributiveLoggingArray = new RedistributiveLoggingArray(arr0);
+        for (int i = 0; i < 3; i++)
+            redistributiveLoggingArray.redistributeMaxValue();
+        int[] destination = new int[5];
+        redistributiveLoggingArray.recoverInto(1, destination);
+        assertArrayEquals(arr1, Arrays.copyOf(destination, 4));
+        redistributiveLoggingArray.recoverInto(-1, destination);
+        assertArrayEquals(arr0, Arrays.copyOf(destination, 4));
+        redistributiveLoggingArray.recoverInto(10, destination);
+        assertArrayEquals(arr3, Arrays.copyOf(destination, 4));
+        assertThrows(IllegalArgumentException.class, () -> redistributiveLoggingArray.recoverInto(1, new int[3]));
+    }
 }
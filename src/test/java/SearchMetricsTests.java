@@ -0,0 +1,65 @@
+import cycles.CycleSearchResult;
+import cycles.DistributionCycles;
+import cycles.SearchListener;
+import cycles.SearchMetrics;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class SearchMetricsTests {
+
+    @Test
+    void searchMetricsTest() throws IOException, InterruptedException, JMException {
+        // тест запускается отдельным выполнением surefire со свойством cycles.metrics=true
+        assertTrue(SearchMetrics.ENABLED, "cycles.metrics is off");
+        int[] arr = {0, 5, 10, 0, 11, 14, 13, 4, 11, 8, 8, 7, 1, 4, 12, 11};
+        List<String> events = new ArrayList<>();
+        SearchListener listener = new SearchListener() {
+            @Override
+            public void searchStarted(String engine, int length) {
+                events.add("started " + engine + " " + length);
+            }
+
+            @Override
+            public void searchFinished(String engine, CycleSearchResult result, long elapsedNanos) {
+                events.add("finished " + engine + " " + result.getCycleLength());
+            }
+        };
+        SearchMetrics.addListener(listener);
+        SearchMetrics.registerMBean();
+        SearchMetrics.registerMBean();
+        Path directory = Files.createTempDirectory("metrics");
+        try {
+            SearchMetrics.Snapshot before = SearchMetrics.snapshot();
+            DistributionCycles.evaluateRedistributionOfMaxValueCycleOffHeap(arr, directory);
+            SearchMetrics.Snapshot after = SearchMetrics.snapshot();
+            assertEquals(1, after.getSearches() - before.getSearches());
+            assertTrue(after.getSteps() - before.getSteps() >= 7864);
+            assertTrue(after.getCycleVerifications() - before.getCycleVerifications() >= 1);
+            assertTrue(after.getRecoveries() - before.getRecoveries() >= 1);
+            assertTrue(after.getRecoverySteps() > before.getRecoverySteps());
+            assertTrue(after.stepsPerSecond(before) > 0);
+            assertEquals(List.of("started OFF_HEAP 16", "finished OFF_HEAP 1695"), events);
+            // истории законченных поисков не остаются в счетчике
+            assertEquals(before.getHistoryEntries(), after.getHistoryEntries());
+            DistributionCycles.evaluateRedistributionOfMaxValueCyclePipelined(arr);
+            DistributionCycles.evaluateRedistributionOfMaxValueCycleResumable(arr, directory.resolve("checkpoint.bin"),
+                    1000);
+            assertEquals(before.getHistoryBytes(), SearchMetrics.snapshot().getHistoryBytes());
+        }
+        finally {
+            SearchMetrics.removeListener(listener);
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName("cycles:type=SearchMetrics"));
+            Files.deleteIfExists(directory);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cycles;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/***
+ * Векторное ядро сравнивается со скалярным на случайных диапазонах; ядра пакетные, поэтому тест лежит в пакете cycles
+ */
+class RangeKernelTests {
+
+    @Test
+    void vectorMatchesScalarTest() {
+        RangeKernel scalar = new ScalarRangeKernel();
+        RangeKernel vector = new VectorRangeKernel();
+        Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            int length = 1 + random.nextInt(round % 10 == 0 ? 1000 : 70);
+            int[] data = new int[length];
+            // малые значения дают много равных максимумов, большие - переполнение data[i] + offset
+            boolean extreme = random.nextBoolean();
+            for (int i = 0; i < length; i++)
+                data[i] = extreme ? random.nextInt() : random.nextInt(5);
+            int from = random.nextInt(length);
+            int to = from + 1 + random.nextInt(length - from);
+            int offset = extreme ? random.nextInt() : random.nextInt(11) - 5;
+            assertEquals(scalar.leftmostMaxIndex(data, offset, from, to),
+                    vector.leftmostMaxIndex(data, offset, from, to));
+            assertEquals(scalar.weightSum(from, to), vector.weightSum(from, to));
+
+            int value = extreme ? random.nextInt() : random.nextInt(7) - 3;
+            int[] scalarData = data.clone();
+            int[] vectorData = data.clone();
+            assertEquals(scalar.addToRange(scalarData, from, to, value), vector.addToRange(vectorData, from, to, value));
+            assertArrayEquals(scalarData, vectorData);
+        }
+    }
+
+    @Test
+    void overflowTest() {
+        RangeKernel scalar = new ScalarRangeKernel();
+        RangeKernel vector = new VectorRangeKernel();
+        // длины до нескольких векторов с хвостами; значения около границ int переполняются при сдвиге
+        for (int length = 1; length <= 67; length++) {
+            int[] data = new int[length];
+            for (int i = 0; i < length; i++)
+                data[i] = (i % 3 == 0) ? Integer.MAX_VALUE - i : Integer.MIN_VALUE + i;
+            for (int offset : new int[]{0, 1, 100, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+                for (int from = 0; from < length; from += 5) {
+                    assertEquals(scalar.leftmostMaxIndex(data, offset, from, length),
+                            vector.leftmostMaxIndex(data, offset, from, length));
+                }
+            }
+            int[] scalarData = data.clone();
+            int[] vectorData = data.clone();
+            assertEquals(scalar.addToRange(scalarData, 0, length, 1), vector.addToRange(vectorData, 0, length, 1));
+            assertArrayEquals(scalarData, vectorData);
+        }
+    }
+}